@@ -2,9 +2,8 @@ import {html, LitElement, PropertyValues} from 'lit';
 import {customElement, property, state} from 'lit/decorators.js';
 import '@vaadin/charts';
 import '@vaadin/charts/src/vaadin-chart-series';
-import type {Options} from 'highcharts';
+import type {AxisSetExtremesEventObject, Chart, Options} from 'highcharts';
 import {get, registerTranslateConfig, use} from "lit-translate";
-import {Nordpool} from "Frontend/src/nordpool";
 
 registerTranslateConfig({
     loader: lang => fetch(`${lang}.json`).then(res => res.json())
@@ -26,7 +25,8 @@ export class HistoryTemplate extends LitElement {
     // Load the initial language and mark that the strings has been loaded so the component can render.
     async connectedCallback() {
         super.connectedCallback();
-        await use(this.language);
+        const [, overview] = await Promise.all([use(this.language), this.fetchPoints()]);
+        this.overview = overview ?? [];
         this.hasLoadedStrings = true;
     }
 
@@ -42,8 +42,39 @@ export class HistoryTemplate extends LitElement {
     @property()
     dayOfMonth: number = 1;
 
-    @property()
-    values?: Array<Nordpool>;
+    // Daily averages of the whole history, the finer prices of the visible range are loaded when zooming
+    @state() overview: Array<[number, number]> = [];
+
+    private rangeRequest = 0;
+
+    private async fetchPoints(min?: number, max?: number): Promise<Array<[number, number]> | undefined> {
+        const range = min !== undefined && max !== undefined
+            ? `?start=${new Date(min).toISOString()}&end=${new Date(max).toISOString()}`
+            : '';
+        try {
+            const response = await fetch(`api/history${range}`);
+            if (!response.ok) {
+                return undefined;
+            }
+            const json = await response.json();
+            return json.points;
+        } catch (e) {
+            return undefined;
+        }
+    }
+
+    private async loadRange(event: AxisSetExtremesEventObject) {
+        const chart: Chart | undefined = (this.querySelector('vaadin-chart') as any)?.configuration;
+        if (!chart) {
+            return;
+        }
+        // Only the latest zoom is applied when the responses arrive out of order
+        const request = ++this.rangeRequest;
+        const points = await this.fetchPoints(event.min, event.max);
+        if (request === this.rangeRequest) {
+            chart.series[0].setData(points ?? this.overview, true, false, false);
+        }
+    }
 
     private getChartOptions(): Options {
         return {
@@ -92,7 +123,11 @@ export class HistoryTemplate extends LitElement {
                 useGPUTranslations: true
             },
             navigator: {
-                enabled: true
+                enabled: true,
+                adaptToUpdatedData: false,
+                series: {
+                    data: this.overview
+                }
             },
             legend: {
                 enabled: false
@@ -108,6 +143,9 @@ export class HistoryTemplate extends LitElement {
             xAxis: {
                 type: "datetime",
                 crosshair: true,
+                events: {
+                    afterSetExtremes: event => this.loadRange(event)
+                },
                 plotLines:
                     [{
                         value: this.currentHour * 1000,
@@ -142,7 +180,7 @@ export class HistoryTemplate extends LitElement {
             series: [{
                 name: this.seriesTitle,
                 type: "line",
-                data: this.values!.map(item => [item.time, item.price]),
+                data: this.overview,
                 boostThreshold: 100
             }],
         };
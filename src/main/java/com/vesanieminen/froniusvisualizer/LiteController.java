@@ -0,0 +1,29 @@
+package com.vesanieminen.froniusvisualizer;
+
+import com.vesanieminen.froniusvisualizer.services.LiteSnapshotService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Locale;
+
+/**
+ * Static page of the current prices and the price chart for the traffic spikes, served from the pre-rendered
+ * {@link LiteSnapshotService} snapshot without a Vaadin session. The language is a query parameter rather than
+ * Accept-Language, so that caches store only two variants.
+ */
+@RestController
+public class LiteController {
+
+    @GetMapping(value = "/lite", produces = MediaType.TEXT_HTML_VALUE)
+    public ResponseEntity<byte[]> getLite(@RequestParam(defaultValue = "fi") String lang,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return RestService.toResponse(LiteSnapshotService.getHtml(Locale.forLanguageTag(lang)), ifNoneMatch, acceptEncoding);
+    }
+
+}
@@ -1,18 +1,39 @@
 package com.vesanieminen.froniusvisualizer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.vesanieminen.froniusvisualizer.services.NordpoolSpotService;
-import com.vesanieminen.froniusvisualizer.services.model.NordpoolPrice;
+import com.vesanieminen.froniusvisualizer.services.FingridService;
+import com.vesanieminen.froniusvisualizer.services.LiteSnapshotService;
+import com.vesanieminen.froniusvisualizer.services.LiveEventService;
+import com.vesanieminen.froniusvisualizer.services.PricePayloadService;
+import com.vesanieminen.froniusvisualizer.services.PricePayloadService.Format;
+import com.vesanieminen.froniusvisualizer.services.PricePayloadService.Resolution;
+import com.vesanieminen.froniusvisualizer.services.PricePayloadService.Window;
+import com.vesanieminen.froniusvisualizer.services.SeriesEncoder;
+import com.vesanieminen.froniusvisualizer.services.SeriesEncoder.Payload;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RestController()
 @RequestMapping("/api")
@@ -20,103 +41,242 @@ public class RestService {
 
     public static final ZoneId fiZoneID = ZoneId.of("Europe/Helsinki");
     public static final ZoneId utcZoneID = ZoneId.of("UTC");
-    private static final DateTimeFormatter utcFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
-            .withZone(utcZoneID);
-    public static final Double vat24Value = 1.24d;
 
-    private PricesWithVAT prices;
-    private Instant lastRefresh;
-    private String jsonStringData;
-    private int todayDayOfYear;
+    private static final CacheControl liveCacheControl = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic().mustRevalidate();
+    private static final CacheControl finalCacheControl = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+    // Longer ranges of the history chart are sent as daily averages
+    private static final Duration maxHourlyHistoryRange = Duration.ofDays(93);
 
-    @GetMapping(value = "/todaysPrices.json", produces = MediaType.APPLICATION_JSON_VALUE)
-    public String getTodaysPrices() throws Exception {
+    private record ProductionKey(FingridService.RealtimeType type, Format format) {
+    }
 
-        // Check hourly cache
-        if (lastRefresh != null
-                && lastRefresh.isAfter(Instant.now().minusSeconds(3600))
-                && jsonStringData != null) {
-            return jsonStringData;
-        }
+    /**
+     * @param series the series the payload was built from, FingridService replaces it on every update
+     */
+    private record ProductionPayload(TimeSeries series, Payload payload) {
+    }
 
-        // Update prices
-        updateTodayPrices();
-        ObjectMapper mapper = new ObjectMapper();
-        this.jsonStringData = mapper.writeValueAsString(this.prices);
+    // The production payloads are encoded once per update of the realtime series instead of on every request
+    private static final Map<ProductionKey, ProductionPayload> productionPayloads = new ConcurrentHashMap<>();
 
-        return jsonStringData;
+    @Autowired
+    LiveEventService liveEventService;
+
+    @GetMapping(value = "/todaysPrices.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getTodaysPrices(@RequestParam(defaultValue = "FI") String zone,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        final var payload = PricePayloadService.get(parseZone(zone), Window.TODAY, Resolution.HOUR, true, Format.LEGACY_JSON);
+        return toResponse(payload, ifNoneMatch, acceptEncoding);
     }
 
-    public void updateTodayPrices() {
-        // Store timestamp and today
-        this.lastRefresh = Instant.now();
-        this.todayDayOfYear = Instant.now().atZone(fiZoneID).toLocalDateTime().getDayOfYear();
+    /**
+     * Prices of a bidding zone in c/kWh. Either a window (today, tomorrow, week, month) or a start and an optional end
+     * is given, as ISO instants or dates in the zone's timezone. Without both the window defaults to today.
+     * The response is JSON, the columnar {@link SeriesEncoder} format or CSV depending on the Accept header.
+     */
+    @GetMapping(value = "/prices", produces = {MediaType.APPLICATION_JSON_VALUE, SeriesEncoder.columnarMediaType, SeriesEncoder.csvMediaType})
+    public ResponseEntity<byte[]> getPrices(@RequestParam(required = false) String window,
+                                            @RequestParam(required = false) String start,
+                                            @RequestParam(required = false) String end,
+                                            @RequestParam(defaultValue = "hour") String resolution,
+                                            @RequestParam(defaultValue = "true") boolean vat,
+                                            @RequestParam(defaultValue = "FI") String zone,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        final var biddingZone = parseZone(zone);
+        final var priceResolution = parseEnum(Resolution.class, resolution);
+        final var format = negotiateFormat(accept);
+        final Payload payload;
+        if (start == null) {
+            final var priceWindow = window == null ? Window.TODAY : parseEnum(Window.class, window);
+            payload = PricePayloadService.get(biddingZone, priceWindow, priceResolution, vat, format);
+        } else {
+            final var startInstant = parseTime(start, biddingZone.zoneId);
+            final var endInstant = end == null ? startInstant.atZone(biddingZone.zoneId).plusDays(1).toInstant() : parseTime(end, biddingZone.zoneId);
+            try {
+                payload = PricePayloadService.get(biddingZone, startInstant, endInstant, priceResolution, vat, format);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        }
+        return toResponse(payload, ifNoneMatch, acceptEncoding);
+    }
 
-        // Fetch prices
-        List<NordpoolPrice> days = NordpoolSpotService.getLatest7DaysList();
-        List<PriceWithVAT> list = days.stream()
-                .filter(np -> isTodayInFinland(np.timeInstant()))
-                .map(PriceWithVAT::new).collect(Collectors.toList());
-        this.prices = new PricesWithVAT(list);
+    /**
+     * Data of the history chart as [[epoch millis, c/kWh], ...]. Without a range this is the daily averages of the whole
+     * history for the overview. With a range the start and the end are widened to whole days in the zone, so that the
+     * zoom requests of different clients share the cache entries, and the prices are hourly for ranges up to 3 months.
+     */
+    @GetMapping(value = "/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getHistory(@RequestParam(required = false) String start,
+                                             @RequestParam(required = false) String end,
+                                             @RequestParam(defaultValue = "true") boolean vat,
+                                             @RequestParam(defaultValue = "FI") String zone,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        final var biddingZone = parseZone(zone);
+        if (start == null || end == null) {
+            return toResponse(PricePayloadService.get(biddingZone, Window.ALL, Resolution.DAY, vat, Format.POINTS), ifNoneMatch, acceptEncoding);
+        }
+        final var startDay = parseTime(start, biddingZone.zoneId).atZone(biddingZone.zoneId).truncatedTo(ChronoUnit.DAYS);
+        final var endTime = parseTime(end, biddingZone.zoneId).atZone(biddingZone.zoneId);
+        final var endDay = endTime.truncatedTo(ChronoUnit.DAYS).equals(endTime) ? endTime : endTime.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+        final var resolution = Duration.between(startDay, endDay).compareTo(maxHourlyHistoryRange) > 0 ? Resolution.DAY : Resolution.HOUR;
+        try {
+            return toResponse(PricePayloadService.get(biddingZone, startDay.toInstant(), endDay.toInstant(), resolution, vat, Format.POINTS), ifNoneMatch, acceptEncoding);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
-    private boolean isTodayInFinland(Instant instant) {
-        return instant.atZone(fiZoneID).toLocalDate().getDayOfYear() == todayDayOfYear;
+
+    /**
+     * Hourly Finnish production and consumption of the last 7 days in MW, see {@link FingridService.RealtimeType}.
+     * The formats are the same as with {@link #getPrices}.
+     */
+    @GetMapping(value = "/production", produces = {MediaType.APPLICATION_JSON_VALUE, SeriesEncoder.columnarMediaType, SeriesEncoder.csvMediaType})
+    public ResponseEntity<byte[]> getProduction(@RequestParam(defaultValue = "wind") String type,
+                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        final var realtimeType = parseEnum(FingridService.RealtimeType.class, type);
+        final var series = FingridService.getRealtimeSeries(realtimeType);
+        final var format = negotiateFormat(accept);
+        final var payload = productionPayloads.compute(new ProductionKey(realtimeType, format),
+                (key, cached) -> cached != null && cached.series() == series ? cached : new ProductionPayload(series, createProductionPayload(key, series)));
+        return toResponse(payload.payload(), ifNoneMatch, acceptEncoding);
     }
 
-    public static class PriceWithVAT {
-        private double price;
-        private String startDate;
-        private String endDate;
+    private static Payload createProductionPayload(ProductionKey key, TimeSeries series) {
+        final var body = switch (key.format()) {
+            // MW precision is enough for the columnar format
+            case COLUMNAR -> SeriesEncoder.toColumnar(series, Duration.ofHours(1).toMillis(), 1);
+            case CSV -> SeriesEncoder.toCsv(series, "value");
+            default -> SeriesEncoder.toJson(series, "values", "value", "type", key.type().name().toLowerCase(), "unit", "MW");
+        };
+        return Payload.of(body, key.format().contentType, false);
+    }
 
-        public PriceWithVAT(double priceWithVAT, String startDateUTC, String endDateUTC) {
-            this.price = priceWithVAT;
-            this.startDate = startDateUTC;
-            this.endDate = endDateUTC;
-        }
+    /**
+     * Key figures and the chart data of the landing page with VAT, pre-rendered once per data update and hour,
+     * see {@link LiteSnapshotService}.
+     */
+    @GetMapping(value = "/snapshot.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getSnapshot(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return toResponse(LiteSnapshotService.getJson(), ifNoneMatch, acceptEncoding);
+    }
 
-        public PriceWithVAT(NordpoolPrice np) {
-            this(np.price * vat24Value,
-                    utcFormatter.format(np.timeInstant()),
-                    utcFormatter.format(np.timeInstant().plusSeconds(3600)));
+    /**
+     * Server-Sent Events of price, hour and Fingrid updates, see {@link LiveEventService}.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getEvents() {
+        final var emitter = liveEventService.connect();
+        if (emitter == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many connections");
         }
+        return emitter;
+    }
 
-        public double getPrice() {
-            return price;
+    private static Format negotiateFormat(String accept) {
+        if (accept == null) {
+            return Format.JSON;
         }
-
-        public void setPrice(double price) {
-            this.price = price;
+        if (accept.contains(SeriesEncoder.columnarMediaType)) {
+            return Format.COLUMNAR;
         }
-
-        public String getStartDate() {
-            return startDate;
+        if (accept.contains(SeriesEncoder.csvMediaType)) {
+            return Format.CSV;
         }
+        return Format.JSON;
+    }
 
-        public void setStartDate(String startDate) {
-            this.startDate = startDate;
+    static ResponseEntity<byte[]> toResponse(Payload payload, String ifNoneMatch, String acceptEncoding) {
+        final var cacheControl = payload.isFinal() ? finalCacheControl : liveCacheControl;
+        final var gzip = acceptsGzip(acceptEncoding);
+        final var etag = gzip ? payload.gzipEtag() : payload.etag();
+        if (matchesEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        final var builder = ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).contentType(MediaType.parseMediaType(payload.contentType()));
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.gzipBody());
         }
+        return builder.body(payload.body());
+    }
 
-        public String getEndDate() {
-            return endDate;
+    /**
+     * @return true if the Accept-Encoding header allows gzip with a non-zero quality, either by name or by *
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            final var parts = coding.split(";");
+            final var name = parts[0].trim().toLowerCase();
+            var quality = 1d;
+            for (int i = 1; i < parts.length; ++i) {
+                final var parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return quality > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = quality > 0;
+            }
         }
+        return wildcard != null && wildcard;
+    }
 
-        public void setEndDate(String endDate) {
-            this.endDate = endDate;
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
+        for (String candidate : ifNoneMatch.split(",")) {
+            final var trimmed = candidate.trim();
+            // Proxies may weaken the tag after compressing, the weak comparison is enough for GET
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    public static  class PricesWithVAT {
-        private List<PriceWithVAT> prices;
-        public PricesWithVAT(List<PriceWithVAT> list) {
-            this.prices = list;
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown value: " + value);
         }
+    }
 
-        public List<PriceWithVAT> getPrices() {
-            return prices;
+    private static BiddingZone parseZone(String value) {
+        try {
+            return BiddingZone.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown zone: " + value);
         }
+    }
 
-        public void setPrices(List<PriceWithVAT> prices) {
-            this.prices = prices;
+    private static Instant parseTime(String value, ZoneId zoneId) {
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(zoneId).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid time: " + value);
         }
     }
 }
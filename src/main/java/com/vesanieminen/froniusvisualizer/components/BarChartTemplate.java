@@ -6,6 +6,7 @@ import com.vaadin.flow.component.PropertyDescriptor;
 import com.vaadin.flow.component.PropertyDescriptors;
 import com.vaadin.flow.component.Tag;
 import com.vaadin.flow.component.dependency.JsModule;
+import com.vesanieminen.froniusvisualizer.services.DaySummaryIndex;
 import com.vesanieminen.froniusvisualizer.services.model.NordpoolPrice;
 import com.vesanieminen.froniusvisualizer.util.Utils;
 
@@ -14,8 +15,6 @@ import java.time.format.FormatStyle;
 import java.util.List;
 
 import static com.vesanieminen.froniusvisualizer.services.NordpoolSpotService.getLatest7DaysList;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.calculateSpotAveragePriceThisMonth;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.getPricesToday;
 
 @Tag("bar-chart-template")
 @JsModule("src/bar-chart-template.ts")
@@ -39,13 +38,15 @@ public class BarChartTemplate extends Component {
         set(UNIT, getTranslation("column-chart.series.unit"));
         set(POST_FIX, getTranslation("c/kWh"));
         set(AVERAGE_TEXT, getTranslation("column-chart.month.average"));
-        final var pricesToday = getPricesToday();
         var data = getLatest7DaysList();
         setNordpoolDataList(data);
         final var hour = (int) Utils.getCurrentInstantHourPrecision().getEpochSecond();
         set(CURRENT_HOUR, hour);
-        var monthAverage = calculateSpotAveragePriceThisMonth();
-        Utils.average(pricesToday).ifPresent(value -> set(AVERAGE, monthAverage));
+        // The average line is only shown when there are prices for today
+        final var today = DaySummaryIndex.get(Utils.getCurrentLocalDateTimeHourPrecisionFinnishZone().toLocalDate());
+        if (today != null) {
+            set(AVERAGE, today.monthAverageToDate());
+        }
     }
 
     public void setNordpoolDataList(List<NordpoolPrice> list) {
@@ -7,13 +7,12 @@ import com.vaadin.flow.component.PropertyDescriptors;
 import com.vaadin.flow.component.Tag;
 import com.vaadin.flow.component.dependency.JsModule;
 import com.vesanieminen.froniusvisualizer.services.PriceCalculatorService;
-import com.vesanieminen.froniusvisualizer.services.model.NordpoolPrice;
 import com.vesanieminen.froniusvisualizer.util.Utils;
 
-import java.util.List;
-
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.getPrices;
-
+/**
+ * The price history chart. The client loads the daily averages of the whole history from /api/history for the overview
+ * and the hourly prices of the visible range when zooming, so no price data goes through the Vaadin state.
+ */
 @Tag("history-template")
 @JsModule("src/history-template.ts")
 public class HistoryTemplate extends Component {
@@ -33,13 +32,7 @@ public class HistoryTemplate extends Component {
         set(POST_FIX, getTranslation("c/kWh"));
         final var dayOfMonth = PriceCalculatorService.getLatestDayOfMonth() - 1;
         set(DAY_OF_MONTH, dayOfMonth);
-        var data = getPrices();
-        setNordpoolDataList(data);
         final var hour = (int) Utils.getCurrentInstantHourPrecision().getEpochSecond();
         set(CURRENT_HOUR, hour);
     }
-
-    public void setNordpoolDataList(List<NordpoolPrice> list) {
-        getElement().setPropertyList("values", list);
-    }
 }
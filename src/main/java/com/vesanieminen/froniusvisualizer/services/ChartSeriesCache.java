@@ -0,0 +1,224 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.vesanieminen.froniusvisualizer.services.FingridService.RealtimeType;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.FingridLiteResponse;
+import com.vesanieminen.froniusvisualizer.services.model.SpotHintaResponse;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chart data of NordpoolspotView shared by all sessions. The series are built once per data version into arrays that
+ * are only read afterwards, so a view binds them to its chart without copying or creating a point object per value.
+ * The views add the localized titles and the plot options.
+ * <p>
+ * The data versions are the instances of the source data, the services replace them on every update.
+ */
+public class ChartSeriesCache {
+
+    private static final int maxCachedPriceSeries = 100;
+
+    /**
+     * Evenly spaced values for a Highcharts ListSeries with pointStart and pointInterval, the gaps are nulls.
+     * The data array must not be modified.
+     */
+    public record ChartSeries(long pointStart, long pointInterval, Number[] data) {
+    }
+
+    public record GridSeries(Map<RealtimeType, ChartSeries> production, ChartSeries renewables) {
+    }
+
+    /**
+     * @param prices the same values as the chart, for the labels of the view
+     */
+    public record PriceSeries(TimeSeries prices, ChartSeries chart) {
+    }
+
+    private record Versioned<T>(Object[] sources, T value) {
+
+        boolean isBuiltFrom(Object... otherSources) {
+            for (int i = 0; i < sources.length; ++i) {
+                if (sources[i] != otherSources[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // The store version is part of the key, so series built from an older store are never served after an update
+    private record PriceKey(long version, BiddingZone zone, boolean vat, long day) {
+    }
+
+    private static volatile Versioned<GridSeries> gridSeries;
+    private static volatile Versioned<ChartSeries> windEstimateSeries;
+    private static volatile Versioned<ChartSeries> temperatureSeries;
+    private static final Map<PriceKey, PriceSeries> priceSeries = new ConcurrentHashMap<>();
+    private static volatile long priceSeriesVersion = -1;
+
+    /**
+     * @return the hourly Fingrid series of the last 7 days
+     */
+    public static GridSeries getGridSeries() {
+        // All realtime series are replaced at once
+        final var wind = FingridService.getRealtimeSeries(RealtimeType.WIND);
+        final var current = gridSeries;
+        if (current != null && current.isBuiltFrom(wind)) {
+            return current.value();
+        }
+        final var created = createGridSeries();
+        gridSeries = new Versioned<>(new Object[]{wind}, created);
+        return created;
+    }
+
+    /**
+     * @return the wind estimate or null when Fingrid has not given one
+     */
+    public static ChartSeries getWindEstimateSeries() {
+        final var estimate = FingridService.getWindEstimate();
+        final var current = windEstimateSeries;
+        if (current != null && current.isBuiltFrom(estimate)) {
+            return current.value();
+        }
+        final var created = createEstimateSeries(estimate);
+        windEstimateSeries = new Versioned<>(new Object[]{estimate}, created);
+        return created;
+    }
+
+    /**
+     * @return the FMI observations followed by the SpotHinta forecast
+     */
+    public static ChartSeries getTemperatureSeries() {
+        final var observations = FmiService.getTemperatureSeries();
+        final var forecast = SpotHintaService.getLatest();
+        final var current = temperatureSeries;
+        if (current != null && current.isBuiltFrom(observations, forecast)) {
+            return current.value();
+        }
+        final var created = createTemperatureSeries(observations, forecast);
+        temperatureSeries = new Versioned<>(new Object[]{observations, forecast}, created);
+        return created;
+    }
+
+    /**
+     * @return the prices of the last 6 days, today and tomorrow when it is available
+     */
+    public static PriceSeries getPriceSeries(BiddingZone zone, boolean vat) {
+        final var prices = PriceStore.get();
+        if (prices.version() > priceSeriesVersion || priceSeries.size() > maxCachedPriceSeries) {
+            clearPriceSeries(prices.version());
+        }
+        final var today = ZonedDateTime.now(zone.zoneId).truncatedTo(ChronoUnit.DAYS);
+        final var key = new PriceKey(prices.version(), zone, vat, today.toInstant().toEpochMilli());
+        return priceSeries.computeIfAbsent(key, ignored -> {
+            final var series = prices.series(zone, today.minusDays(6).toInstant(), today.plusDays(2).toInstant(), vat);
+            return new PriceSeries(series, toChartSeries(series, PriceStore.hourMillis));
+        });
+    }
+
+    private static synchronized void clearPriceSeries(long version) {
+        priceSeries.clear();
+        priceSeriesVersion = Math.max(priceSeriesVersion, version);
+    }
+
+    private static GridSeries createGridSeries() {
+        final var production = new EnumMap<RealtimeType, ChartSeries>(RealtimeType.class);
+        for (RealtimeType type : RealtimeType.values()) {
+            production.put(type, toChartSeries(FingridService.getRealtimeSeries(type), PriceStore.hourMillis));
+        }
+        return new GridSeries(production, createRenewablesSeries());
+    }
+
+    private static ChartSeries createRenewablesSeries() {
+        final var wind = FingridService.getRealtimeSeries(RealtimeType.WIND);
+        final var hydro = FingridService.getRealtimeSeries(RealtimeType.HYDRO);
+        final var solar = FingridService.getRealtimeSeries(RealtimeType.SOLAR);
+        final var times = new long[wind.size()];
+        final var values = new double[wind.size()];
+        var size = 0;
+        for (int i = 0; i < wind.size(); ++i) {
+            final var hydroIndex = hydro.indexOf(wind.times()[i]);
+            final var solarIndex = solar.indexOf(wind.times()[i]);
+            if (hydroIndex < 0 || solarIndex < 0) {
+                continue;
+            }
+            times[size] = wind.times()[i];
+            values[size++] = wind.values()[i] + hydro.values()[hydroIndex] + solar.values()[solarIndex];
+        }
+        return toChartSeries(new TimeSeries(Arrays.copyOf(times, size), Arrays.copyOf(values, size)), PriceStore.hourMillis);
+    }
+
+    private static ChartSeries createEstimateSeries(List<FingridLiteResponse> estimates) {
+        if (estimates == null) {
+            return null;
+        }
+        final var items = estimates.stream().filter(item -> item.startTime != null).sorted(Comparator.comparing((FingridLiteResponse item) -> item.startTime)).toList();
+        final var times = items.stream().mapToLong(item -> item.startTime.toInstant().toEpochMilli()).toArray();
+        final var values = items.stream().mapToDouble(item -> item.value).toArray();
+        final var series = new TimeSeries(times, values);
+        return toChartSeries(series, getStep(series));
+    }
+
+    private static ChartSeries createTemperatureSeries(TimeSeries observations, List<SpotHintaResponse> forecast) {
+        final var times = new ArrayList<Long>();
+        final var values = new ArrayList<Double>();
+        for (int i = 0; i < observations.size(); ++i) {
+            times.add(observations.times()[i]);
+            values.add(observations.values()[i]);
+        }
+        final var lastObservation = observations.isEmpty() ? Long.MIN_VALUE : observations.times()[observations.size() - 1];
+        if (forecast != null) {
+            for (SpotHintaResponse response : forecast) {
+                final var time = response.TimeStamp.toInstant().toEpochMilli();
+                // The observations are preferred for the hours that have both
+                if (time > lastObservation) {
+                    times.add(time);
+                    values.add(response.Temperature);
+                }
+            }
+        }
+        final var series = new TimeSeries(times.stream().mapToLong(Long::longValue).toArray(), values.stream().mapToDouble(Double::doubleValue).toArray());
+        return toChartSeries(series, getStep(series));
+    }
+
+    /**
+     * @return the smallest distance of two values, an hour for series that have less than two values
+     */
+    private static long getStep(TimeSeries series) {
+        var step = Long.MAX_VALUE;
+        for (int i = 1; i < series.size(); ++i) {
+            final var distance = series.times()[i] - series.times()[i - 1];
+            if (distance > 0) {
+                step = Math.min(step, distance);
+            }
+        }
+        return step == Long.MAX_VALUE ? PriceStore.hourMillis : step;
+    }
+
+    /**
+     * Places the values on an evenly spaced grid, a value between the grid points goes to the previous point.
+     */
+    static ChartSeries toChartSeries(TimeSeries series, long step) {
+        if (series.isEmpty()) {
+            return new ChartSeries(Instant.now().toEpochMilli(), step, new Number[0]);
+        }
+        final var times = series.times();
+        final var start = times[0];
+        final var data = new Number[(int) ((times[times.length - 1] - start) / step) + 1];
+        for (int i = 0; i < times.length; ++i) {
+            data[(int) ((times[i] - start) / step)] = series.values()[i];
+        }
+        return new ChartSeries(start, step, data);
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Holds the last good snapshot of an upstream data source.
+ * <p>
+ * Readers always get the latest successfully loaded value immediately, refreshes happen on the caller's
+ * (scheduler) thread. After {@link #failureThreshold} consecutive failures the circuit opens and
+ * refresh attempts are skipped until the cool-down has passed, so a slow or broken upstream is not hammered and
+ * never blocks a page render.
+ * <p>
+ * When created with a snapshot type, every successful refresh is also written to the {@link SnapshotStore} and
+ * {@link #restore()} loads it back on boot without touching the network.
+ */
+@Slf4j
+public class DataCache<T> {
+
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final String snapshotName;
+    private final Type snapshotType;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private final List<Consumer<T>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile T value;
+    private volatile long version;
+    private volatile Instant updated;
+    private volatile Instant lastFailure;
+    private volatile int consecutiveFailures;
+    private volatile Instant circuitOpenUntil = Instant.MIN;
+
+    public DataCache(String name) {
+        this(name, null, null);
+    }
+
+    public DataCache(String name, String snapshotName, Type snapshotType) {
+        this(name, snapshotName, snapshotType, 3, Duration.ofMinutes(15));
+    }
+
+    public DataCache(String name, String snapshotName, Type snapshotType, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.snapshotName = snapshotName;
+        this.snapshotType = snapshotType;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Called with every new snapshot, both from refreshes and from {@link #restore()}. Used to rebuild derived data.
+     */
+    public void addListener(Consumer<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Runs the loader unless another refresh is in progress or the circuit is open. A loader returning null or throwing
+     * counts as a failure and keeps the previous snapshot.
+     *
+     * @return true if a new snapshot was stored
+     */
+    public boolean refresh(Supplier<T> loader) {
+        if (isCircuitOpen()) {
+            log.info("skipped {} refresh, circuit open until {}", name, circuitOpenUntil);
+            return false;
+        }
+        if (!refreshing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            final var newValue = loader.get();
+            if (newValue == null) {
+                onFailure(null);
+                return false;
+            }
+            set(newValue);
+            if (snapshotName != null) {
+                SnapshotStore.write(snapshotName, newValue);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            onFailure(e);
+            return false;
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    public void set(T newValue) {
+        set(newValue, Instant.now());
+    }
+
+    public void set(T newValue, Instant updatedAt) {
+        value = newValue;
+        updated = updatedAt;
+        ++version;
+        consecutiveFailures = 0;
+        circuitOpenUntil = Instant.MIN;
+        listeners.forEach(listener -> listener.accept(newValue));
+    }
+
+    /**
+     * Loads the persisted snapshot, if any. The freshness age is counted from when the snapshot was written.
+     *
+     * @return true if a snapshot was loaded
+     */
+    public boolean restore() {
+        if (snapshotName == null || value != null) {
+            return false;
+        }
+        final var snapshot = SnapshotStore.<T>read(snapshotName, snapshotType);
+        try {
+            snapshot.ifPresent(item -> set(item.value(), item.written()));
+        } catch (RuntimeException e) {
+            // A snapshot from an older model version should not prevent the app from starting
+            log.warn("Could not restore {} from its snapshot", name, e);
+            value = null;
+            updated = null;
+            return false;
+        }
+        snapshot.ifPresent(item -> log.info("restored {} from a snapshot written at {}", name, item.written()));
+        return snapshot.isPresent();
+    }
+
+    private void onFailure(RuntimeException e) {
+        lastFailure = Instant.now();
+        ++consecutiveFailures;
+        if (consecutiveFailures >= failureThreshold) {
+            circuitOpenUntil = lastFailure.plus(openDuration);
+            log.warn("{} failed {} times in a row, opening circuit until {}", name, consecutiveFailures, circuitOpenUntil, e);
+        } else {
+            log.warn("{} refresh failed ({} in a row)", name, consecutiveFailures, e);
+        }
+    }
+
+    /**
+     * Publishes a {@link DataEvents.DataUpdated} for every new snapshot, with the range of the data it covers.
+     */
+    public void publishTo(DataEvents.Source source, Function<T, Instant[]> dataRange) {
+        addListener(newValue -> {
+            final var range = dataRange.apply(newValue);
+            DataEvents.publish(new DataEvents.DataUpdated(source, version, range[0], range[1]));
+        });
+    }
+
+    public T get() {
+        return value;
+    }
+
+    public boolean hasValue() {
+        return value != null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getUpdated() {
+        return updated;
+    }
+
+    public Instant getLastFailure() {
+        return lastFailure;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return the age of the served snapshot, empty if nothing has been loaded yet
+     */
+    public Optional<Duration> getAge() {
+        final var updatedAt = updated;
+        return updatedAt == null ? Optional.empty() : Optional.of(Duration.between(updatedAt, Instant.now()));
+    }
+
+    public boolean isOlderThan(Duration maxAge) {
+        return getAge().map(age -> age.compareTo(maxAge) > 0).orElse(true);
+    }
+
+    public boolean isCircuitOpen() {
+        return Instant.now().isBefore(circuitOpenUntil);
+    }
+
+}
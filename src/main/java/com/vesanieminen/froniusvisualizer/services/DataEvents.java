@@ -0,0 +1,77 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-process bus for data updates. The ingestion layer publishes one {@link DataUpdated} per real change of a dataset
+ * and the derived caches subscribe to it instead of expiring on timers.
+ * <p>
+ * Events are delivered synchronously on the publishing (scheduler) thread, in subscription order. A failing subscriber
+ * is logged and does not prevent the others from getting the event.
+ */
+@Slf4j
+public class DataEvents {
+
+    public enum Source {
+        // PriceStore, all bidding zones
+        PRICES,
+        FINGRID_REALTIME,
+        FINGRID_ESTIMATES,
+        WEATHER
+    }
+
+    /**
+     * @param version increases with every update of the source
+     * @param start   start of the changed data, inclusive
+     * @param end     end of the changed data, exclusive
+     */
+    public record DataUpdated(Source source, long version, Instant start, Instant end) {
+
+        public boolean overlaps(Instant rangeStart, Instant rangeEnd) {
+            return start.isBefore(rangeEnd) && rangeStart.isBefore(end);
+        }
+    }
+
+    private record Subscription(Source source, Consumer<DataUpdated> listener) {
+    }
+
+    private static final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public static void subscribe(Source source, Consumer<DataUpdated> listener) {
+        subscriptions.add(new Subscription(source, listener));
+    }
+
+    /**
+     * @return [first, last + step) of the given times, [now, now) when there are none
+     */
+    public static Instant[] getRange(Stream<Instant> times, Duration step) {
+        final var summary = times.mapToLong(Instant::toEpochMilli).summaryStatistics();
+        if (summary.getCount() == 0) {
+            final var now = Instant.now();
+            return new Instant[]{now, now};
+        }
+        return new Instant[]{Instant.ofEpochMilli(summary.getMin()), Instant.ofEpochMilli(summary.getMax()).plus(step)};
+    }
+
+    public static void publish(DataUpdated event) {
+        log.info("{} updated to version {} for {} - {}", event.source(), event.version(), event.start(), event.end());
+        for (Subscription subscription : subscriptions) {
+            if (subscription.source() != event.source()) {
+                continue;
+            }
+            try {
+                subscription.listener().accept(event);
+            } catch (RuntimeException e) {
+                log.error("Subscriber of " + event.source() + " failed", e);
+            }
+        }
+    }
+
+}
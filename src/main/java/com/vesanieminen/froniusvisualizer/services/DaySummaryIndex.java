@@ -0,0 +1,126 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.NordpoolPrice;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+import com.vesanieminen.froniusvisualizer.util.Utils.CheapestHours;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+
+/**
+ * Summaries of the Finnish prices with VAT per calendar day, built once per {@link PriceStore} version so that the day
+ * navigation of the bar charts is a map lookup.
+ */
+@Slf4j
+public class DaySummaryIndex {
+
+    private static final int cheapestPeriodHours = 3;
+
+    /**
+     * @param prices             the hours of the day, must not be modified
+     * @param cheapestHours      the cheapest 3 consecutive hours of the day, null if the day has less than 3 hours
+     * @param monthAverageToDate the average of the month from its first day to the end of this day
+     */
+    public record DaySummary(LocalDate date, List<NordpoolPrice> prices, double average, double min, double max, CheapestHours cheapestHours, double monthAverageToDate) {
+    }
+
+    private record Index(long version, Map<LocalDate, DaySummary> days) {
+    }
+
+    private static volatile Index index = new Index(-1, Map.of());
+
+    static {
+        DataEvents.subscribe(DataEvents.Source.PRICES, event -> rebuild(PriceStore.get()));
+    }
+
+    /**
+     * @return the summary of the day or null if there are no prices for it
+     */
+    public static DaySummary get(LocalDate date) {
+        final var prices = PriceStore.get();
+        var current = index;
+        if (current.version() != prices.version()) {
+            current = rebuild(prices);
+        }
+        return current.days().get(date);
+    }
+
+    private static synchronized Index rebuild(PriceStore.Prices prices) {
+        if (index.version() == prices.version()) {
+            return index;
+        }
+        final var startTime = System.currentTimeMillis();
+        final var series = prices.series(BiddingZone.FI, Instant.ofEpochMilli(prices.startMillis()), Instant.ofEpochMilli(prices.timeAt(prices.length())), true);
+        final var days = new HashMap<LocalDate, DaySummary>();
+        YearMonth month = null;
+        var monthSum = 0d;
+        var monthCount = 0;
+        var dayStart = 0;
+        while (dayStart < series.size()) {
+            final var date = Instant.ofEpochMilli(series.times()[dayStart]).atZone(fiZoneID).toLocalDate();
+            final var nextDay = date.plusDays(1).atStartOfDay(fiZoneID).toInstant().toEpochMilli();
+            var dayEnd = dayStart;
+            while (dayEnd < series.size() && series.times()[dayEnd] < nextDay) {
+                ++dayEnd;
+            }
+            if (!YearMonth.from(date).equals(month)) {
+                month = YearMonth.from(date);
+                monthSum = 0;
+                monthCount = 0;
+            }
+            final var summary = summarize(date, series, dayStart, dayEnd, monthSum, monthCount);
+            for (int i = dayStart; i < dayEnd; ++i) {
+                monthSum += series.values()[i];
+            }
+            monthCount += dayEnd - dayStart;
+            days.put(date, summary);
+            dayStart = dayEnd;
+        }
+        index = new Index(prices.version(), days);
+        log.info("Built the summaries of {} days in {} ms", days.size(), System.currentTimeMillis() - startTime);
+        return index;
+    }
+
+    /**
+     * @param monthSum   sum of the prices of the month before this day
+     * @param monthCount number of the prices of the month before this day
+     */
+    private static DaySummary summarize(LocalDate date, TimeSeries series, int from, int to, double monthSum, int monthCount) {
+        final var times = series.times();
+        final var values = series.values();
+        final var prices = new ArrayList<NordpoolPrice>(to - from);
+        var sum = 0d;
+        var min = Double.MAX_VALUE;
+        var max = -Double.MAX_VALUE;
+        for (int i = from; i < to; ++i) {
+            prices.add(new NordpoolPrice(values[i], times[i]));
+            sum += values[i];
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        CheapestHours cheapestHours = null;
+        for (int i = from; i + cheapestPeriodHours <= to; ++i) {
+            var periodSum = 0d;
+            for (int j = i; j < i + cheapestPeriodHours; ++j) {
+                periodSum += values[j];
+            }
+            final var average = periodSum / cheapestPeriodHours;
+            if (cheapestHours == null || average < cheapestHours.averagePrice()) {
+                cheapestHours = new CheapestHours(Instant.ofEpochMilli(times[i]), Instant.ofEpochMilli(times[i + cheapestPeriodHours - 1]), average);
+            }
+        }
+        final var count = to - from;
+        return new DaySummary(date, Collections.unmodifiableList(prices), sum / count, min, max, cheapestHours, (monthSum + sum) / (monthCount + count));
+    }
+
+}
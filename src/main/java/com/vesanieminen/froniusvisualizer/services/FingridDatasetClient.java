@@ -0,0 +1,176 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.fatboyindustrial.gsonjavatime.Converters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.vesanieminen.froniusvisualizer.services.model.FingridLiteResponse;
+import com.vesanieminen.froniusvisualizer.services.model.FingridLiteResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import static com.vesanieminen.froniusvisualizer.util.Properties.getFingridAPIKey;
+
+/**
+ * Client for the data.fingrid.fi dataset API that is safe to use for long time ranges.
+ * <p>
+ * A range is split into calendar month chunks (UTC) that are fetched concurrently, each following the API pagination.
+ * All requests go through a shared limiter that keeps us within the API key's rate limit. Chunks that lie fully in the
+ * past are immutable and are cached on disk, so only the open-ended tail of a range is requested again.
+ */
+@Slf4j
+public class FingridDatasetClient {
+
+    private static final String baseUrl = "https://data.fingrid.fi/api/datasets/%d/data?format=json&locale=en&sortBy=startTime&sortOrder=asc&pageSize=%d&page=%d&startTime=%s&endTime=%s";
+    private static final int pageSize = 20000;
+    private static final int maxConcurrentRequests = 2;
+    // The API allows 10 requests per minute per key
+    private static final Duration minimumRequestInterval = Duration.ofSeconds(6);
+    // Fingrid may still correct the most recent values, only cache chunks that ended before this
+    private static final Duration settleTime = Duration.ofDays(2);
+    private static final Type chunkType = new TypeToken<List<FingridLiteResponse>>() {
+    }.getType();
+
+    private static final Gson gson = Converters.registerAll(new GsonBuilder()).create();
+    private static final HttpClient httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).connectTimeout(Duration.ofSeconds(10)).build();
+    private static final Semaphore concurrentRequests = new Semaphore(maxConcurrentRequests);
+    private static final ExecutorService chunkExecutor = Executors.newFixedThreadPool(maxConcurrentRequests, runnable -> {
+        final var thread = new Thread(runnable, "fingrid-dataset-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static Instant nextRequestAllowed = Instant.MIN;
+
+    /**
+     * Fetches the given dataset for [start, end), ordered by start time.
+     */
+    public static List<FingridLiteResponse> fetch(FingridService.QueryType queryType, Instant start, Instant end) {
+        final var futures = splitToChunks(start, end).stream()
+                .map(chunk -> CompletableFuture.supplyAsync(() -> fetchChunk(queryType.id, chunk), chunkExecutor))
+                .toList();
+        final var result = new ArrayList<FingridLiteResponse>();
+        futures.forEach(future -> future.join().stream()
+                .filter(item -> !item.startTime.toInstant().isBefore(start) && item.startTime.toInstant().isBefore(end))
+                .forEach(result::add));
+        return result;
+    }
+
+    /**
+     * Chunks always start at the beginning of a month so that the cached months are reused when the requested start
+     * moves forward. Only the last chunk is cut at the requested end.
+     */
+    public static List<Chunk> splitToChunks(Instant start, Instant end) {
+        final var chunks = new ArrayList<Chunk>();
+        var chunkStart = start.atZone(ZoneOffset.UTC).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+        while (chunkStart.toInstant().isBefore(end)) {
+            final var nextMonth = chunkStart.plusMonths(1).toInstant();
+            final var chunkEnd = nextMonth.isBefore(end) ? nextMonth : end;
+            chunks.add(new Chunk(chunkStart.toInstant(), chunkEnd));
+            chunkStart = chunkStart.plusMonths(1);
+        }
+        return chunks;
+    }
+
+    private static List<FingridLiteResponse> fetchChunk(int datasetId, Chunk chunk) {
+        final var cacheName = chunk.getCacheName(datasetId);
+        final var isHistorical = chunk.isHistorical();
+        if (isHistorical) {
+            final var cached = SnapshotStore.<List<FingridLiteResponse>>read(cacheName, chunkType);
+            if (cached.isPresent()) {
+                return cached.get().value();
+            }
+        }
+        final var data = new ArrayList<FingridLiteResponse>();
+        var page = 1;
+        while (true) {
+            final var response = runQuery(baseUrl.formatted(datasetId, pageSize, page, chunk.start(), chunk.end()));
+            if (response == null || response.data == null) {
+                throw new IllegalStateException("Fingrid returned no data for dataset " + datasetId + " page " + page);
+            }
+            data.addAll(response.data);
+            if (response.pagination == null || response.pagination.nextPage == null) {
+                break;
+            }
+            page = response.pagination.nextPage;
+        }
+        if (isHistorical && !data.isEmpty()) {
+            SnapshotStore.write(cacheName, data);
+        }
+        return data;
+    }
+
+    private static FingridLiteResponseWrapper runQuery(String query) {
+        try {
+            concurrentRequests.acquire();
+            try {
+                waitForRequestSlot();
+                final var request = HttpRequest.newBuilder().uri(new URI(query)).timeout(Duration.ofSeconds(30)).GET().header("x-api-key", getFingridAPIKey()).build();
+                var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 429) {
+                    log.warn("Fingrid rate limit hit, retrying once");
+                    // Holds back the other threads too, the retry waits for its turn like any other request
+                    backOff(minimumRequestInterval.multipliedBy(2));
+                    waitForRequestSlot();
+                    response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                }
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Fingrid responded with status " + response.statusCode());
+                }
+                return gson.fromJson(response.body(), FingridLiteResponseWrapper.class);
+            } finally {
+                concurrentRequests.release();
+            }
+        } catch (IOException | InterruptedException | URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void waitForRequestSlot() throws InterruptedException {
+        final Instant slot;
+        synchronized (FingridDatasetClient.class) {
+            final var now = Instant.now();
+            slot = nextRequestAllowed.isAfter(now) ? nextRequestAllowed : now;
+            nextRequestAllowed = slot.plus(minimumRequestInterval);
+        }
+        final var wait = Duration.between(Instant.now(), slot);
+        if (!wait.isNegative()) {
+            Thread.sleep(wait.toMillis());
+        }
+    }
+
+    private static synchronized void backOff(Duration duration) {
+        final var resume = Instant.now().plus(duration);
+        if (resume.isAfter(nextRequestAllowed)) {
+            nextRequestAllowed = resume;
+        }
+    }
+
+    public record Chunk(Instant start, Instant end) {
+
+        boolean isHistorical() {
+            return end.isBefore(Instant.now().minus(settleTime));
+        }
+
+        String getCacheName(int datasetId) {
+            return "fingrid/%d/%d-%d".formatted(datasetId, start.getEpochSecond(), end.getEpochSecond());
+        }
+    }
+
+}
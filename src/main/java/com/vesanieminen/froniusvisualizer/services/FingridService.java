@@ -2,37 +2,40 @@ package com.vesanieminen.froniusvisualizer.services;
 
 import com.fatboyindustrial.gsonjavatime.Converters;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import com.opencsv.CSVWriter;
 import com.vesanieminen.froniusvisualizer.services.model.FingridLiteResponse;
-import com.vesanieminen.froniusvisualizer.services.model.FingridLiteResponseWrapper;
 import com.vesanieminen.froniusvisualizer.services.model.FingridRealtimeResponse;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.time.temporal.ChronoUnit;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
-import static com.vesanieminen.froniusvisualizer.util.Properties.getFingridAPIKey;
 import static com.vesanieminen.froniusvisualizer.util.Utils.fiLocale;
 import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
 import static com.vesanieminen.froniusvisualizer.util.Utils.getCurrentTimeWithHourPrecision;
 import static com.vesanieminen.froniusvisualizer.util.Utils.getCurrentZonedDateTimeHourPrecision;
 import static com.vesanieminen.froniusvisualizer.util.Utils.keepEveryFirstItem;
 import static com.vesanieminen.froniusvisualizer.util.Utils.keepEveryFirstItemLite;
-import static com.vesanieminen.froniusvisualizer.util.Utils.keepEveryNthItem;
 import static java.util.stream.Collectors.joining;
 
 public class FingridService {
@@ -45,6 +48,8 @@ public class FingridService {
         INDUSTRY(202),
         NET_IMPORT_EXPORT(194),
         SOLAR(248),
+        REALTIME_WIND(181),
+        REALTIME_CONSUMPTION(193),
         // hourly resolution
         CONSUMPTION(124),
         PRODUCTION(74),
@@ -78,37 +83,68 @@ public class FingridService {
         }
     }
 
-    private static FingridRealtimeResponse cachedFingridRealtimeResponse;
-    public static LocalDateTime fingridDataUpdated;
-    private static FingridRealtimeResponse cachedFingridRealtimeResponseForMonth;
-    private static List<FingridLiteResponse> cachedWindEstimateResponses;
-    private static List<FingridLiteResponse> cachedProductionEstimateResponses;
-    private static List<FingridLiteResponse> cachedConsumptionEstimateResponses;
+    /**
+     * The series of {@link #getLatest7Days()}, in MW.
+     */
+    public enum RealtimeType {
+        HYDRO(response -> response.HydroPower),
+        NUCLEAR(response -> response.NuclearPower),
+        WIND(response -> response.WindPower),
+        SOLAR(response -> response.SolarPower),
+        CONSUMPTION(response -> response.Consumption),
+        NET_IMPORT_EXPORT(response -> response.NetImportExport);
+
+        private final Function<FingridRealtimeResponse, List<FingridRealtimeResponse.Data>> getter;
+
+        RealtimeType(Function<FingridRealtimeResponse, List<FingridRealtimeResponse.Data>> getter) {
+            this.getter = getter;
+        }
+    }
+
+    private static final Type liteResponseListType = new TypeToken<List<FingridLiteResponse>>() {
+    }.getType();
+    private static final DataCache<FingridRealtimeResponse> realtimeCache = new DataCache<>("Fingrid realtime", "fingrid-realtime", FingridRealtimeResponse.class);
+    private static final DataCache<FingridRealtimeResponse> realtimeHistoryCache = new DataCache<>("Fingrid realtime history");
+    private static final Duration realtimeHistoryMaxAge = Duration.ofHours(1);
+    private static volatile Map<RealtimeType, TimeSeries> realtimeSeries = Map.of();
+    private static final DataCache<List<FingridLiteResponse>> windEstimateCache = new DataCache<>("Fingrid wind estimate", "fingrid-wind-estimate", liteResponseListType);
+
+    static {
+        realtimeCache.addListener(response -> realtimeSeries = createRealtimeSeries(response));
+        realtimeCache.publishTo(DataEvents.Source.FINGRID_REALTIME, response -> DataEvents.getRange(response.WindPower.stream().map(item -> item.startTime.toInstant()), Duration.ofHours(1)));
+        windEstimateCache.publishTo(DataEvents.Source.FINGRID_ESTIMATES, FingridService::getEstimateRange);
+    }
+
+    private static Instant[] getEstimateRange(List<FingridLiteResponse> estimates) {
+        return DataEvents.getRange(estimates.stream().map(item -> item.startTime.toInstant()), Duration.ofHours(1));
+    }
 
     // The final target for the basic fingrid query is:
     // https://www.fingrid.fi/api/graph/power-system-production?start=2022-10-04&end=2022-10-10
     private static final String fingridRealtimeBaseUrl = "https://www.fingrid.fi/api/graph/power-system-production?";
 
-    // The final target for the wind estimate query is the following:
-    // https://api.fingrid.fi/v1/variable/245/events/json?start_time=2022-10-09T00%3A00%3A00%2B0300&end_time=2022-10-12T00%3A00%3A00%2B0300
-    // new API format:
-    // https://data.fingrid.fi/api/datasets/245/data?format=json&locale=en&sortBy=startTime&sortOrder=asc
-    // https://data.fingrid.fi/api/datasets/245/data?startTime=2024-05-01T00:00:00&format=json&locale=en&sortBy=startTime&sortOrder=asc
-    private static final String fingridHourlyBaseUrl = "https://data.fingrid.fi/api/datasets/";
-    private static final String fingridHourlyUrlPostfix = "/data?format=json&locale=en&sortBy=startTime&sortOrder=asc&pageSize=1000&";
-
-    public static void updateRealtimeData() {
-        final var newFingridRealtimeResponse = runRealtimeDataQuery(createFingridRealtimeQuery());
-        if (!newFingridRealtimeResponse.isValid()) {
-            return;
-        }
-        cachedFingridRealtimeResponse = newFingridRealtimeResponse;
-        cachedFingridRealtimeResponse.HydroPower = keepEveryFirstItem(cachedFingridRealtimeResponse.HydroPower);
-        cachedFingridRealtimeResponse.NuclearPower = keepEveryFirstItem(cachedFingridRealtimeResponse.NuclearPower);
-        cachedFingridRealtimeResponse.WindPower = keepEveryFirstItem(cachedFingridRealtimeResponse.WindPower);
-        cachedFingridRealtimeResponse.SolarPower = keepEveryFirstItem(cachedFingridRealtimeResponse.SolarPower);
-        cachedFingridRealtimeResponse.Consumption = keepEveryFirstItem(cachedFingridRealtimeResponse.Consumption);
-        cachedFingridRealtimeResponse.NetImportExport = keepEveryFirstItem(cachedFingridRealtimeResponse.NetImportExport);
+    // The estimates are fetched from the data.fingrid.fi dataset API, see FingridDatasetClient
+    private static final Duration estimateHorizon = Duration.ofDays(3);
+
+    public static void restore() {
+        realtimeCache.restore();
+        windEstimateCache.restore();
+    }
+
+    public static boolean updateRealtimeData() {
+        return realtimeCache.refresh(() -> {
+            final var newFingridRealtimeResponse = runRealtimeDataQuery(createFingridRealtimeQuery());
+            if (newFingridRealtimeResponse == null || !newFingridRealtimeResponse.isValid()) {
+                return null;
+            }
+            newFingridRealtimeResponse.HydroPower = keepEveryFirstItem(newFingridRealtimeResponse.HydroPower);
+            newFingridRealtimeResponse.NuclearPower = keepEveryFirstItem(newFingridRealtimeResponse.NuclearPower);
+            newFingridRealtimeResponse.WindPower = keepEveryFirstItem(newFingridRealtimeResponse.WindPower);
+            newFingridRealtimeResponse.SolarPower = keepEveryFirstItem(newFingridRealtimeResponse.SolarPower);
+            newFingridRealtimeResponse.Consumption = keepEveryFirstItem(newFingridRealtimeResponse.Consumption);
+            newFingridRealtimeResponse.NetImportExport = keepEveryFirstItem(newFingridRealtimeResponse.NetImportExport);
+            return newFingridRealtimeResponse;
+        });
     }
 
     public static FingridRealtimeResponse runRealtimeDataQuery(String query) {
@@ -127,7 +163,6 @@ public class FingridService {
     public static String createFingridRealtimeQuery() {
         Map<String, String> requestParams = new HashMap<>();
         final var now = getCurrentTimeWithHourPrecision();
-        fingridDataUpdated = now;
         // Nordpool gives data for the next day at 14:00. Before that we need to retrieve 6 days back and after 5 to match the amount of Fingrid and Nordpool history
         var daysBack = now.getHour() < 14 ? 6 : 5;
         requestParams.put("start", createFingridDateTimeString(now.minusDays(daysBack)));
@@ -135,12 +170,38 @@ public class FingridService {
         return requestParams.keySet().stream().map(key -> key + "=" + requestParams.get(key)).collect(joining("&", fingridRealtimeBaseUrl, ""));
     }
 
+    /**
+     * Hourly 3min-dataset values for the last 4 months. The months are cached by {@link FingridDatasetClient}, so a
+     * refresh only downloads the current month again.
+     */
     public static FingridRealtimeResponse getRealtimeDataForMonth() {
-        if (cachedFingridRealtimeResponseForMonth == null) {
-            final var now = getCurrentTimeWithHourPrecision();
-            cachedFingridRealtimeResponseForMonth = runRealtimeDataQuery(createFingridRealtimeQuery(now.minusMonths(4), now.truncatedTo(ChronoUnit.DAYS)));
+        if (realtimeHistoryCache.isOlderThan(realtimeHistoryMaxAge)) {
+            realtimeHistoryCache.refresh(FingridService::fetchRealtimeHistory);
         }
-        return cachedFingridRealtimeResponseForMonth;
+        return realtimeHistoryCache.get();
+    }
+
+    private static FingridRealtimeResponse fetchRealtimeHistory() {
+        final var now = getCurrentZonedDateTimeHourPrecision();
+        final var start = now.minusMonths(4).toInstant();
+        final var end = now.truncatedTo(ChronoUnit.DAYS).toInstant();
+        final var response = new FingridRealtimeResponse();
+        response.HydroPower = toRealtimeData(FingridDatasetClient.fetch(QueryType.HYDRO, start, end));
+        response.NuclearPower = toRealtimeData(FingridDatasetClient.fetch(QueryType.NUCLEAR, start, end));
+        response.WindPower = toRealtimeData(FingridDatasetClient.fetch(QueryType.REALTIME_WIND, start, end));
+        response.SolarPower = toRealtimeData(FingridDatasetClient.fetch(QueryType.SOLAR, start, end));
+        response.Consumption = toRealtimeData(FingridDatasetClient.fetch(QueryType.REALTIME_CONSUMPTION, start, end));
+        response.NetImportExport = toRealtimeData(FingridDatasetClient.fetch(QueryType.NET_IMPORT_EXPORT, start, end));
+        return response.isValid() ? response : null;
+    }
+
+    private static List<FingridRealtimeResponse.Data> toRealtimeData(List<FingridLiteResponse> input) {
+        return keepEveryFirstItem(input.stream().map(item -> {
+            final var data = new FingridRealtimeResponse.Data();
+            data.value = item.value;
+            data.startTime = item.startTime;
+            return data;
+        }).toList());
     }
 
     public static String createFingridRealtimeQuery(LocalDateTime start, LocalDateTime end) {
@@ -150,78 +211,56 @@ public class FingridService {
         return requestParams.keySet().stream().map(key -> key + "=" + requestParams.get(key)).collect(joining("&", fingridRealtimeBaseUrl, ""));
     }
 
-    public static FingridRealtimeResponse getLatest7Days() throws URISyntaxException, IOException, InterruptedException {
-        return cachedFingridRealtimeResponse;
+    public static FingridRealtimeResponse getLatest7Days() {
+        return realtimeCache.get();
     }
 
-    public static void updateWindEstimateData() {
-        final var start = getCurrentZonedDateTimeHourPrecision();
-        final var newWindEstimateResponses = runQuery(createHourlyQuery(QueryType.WIND_PREDICTION, start));
-        if (!newWindEstimateResponses.isEmpty()) {
-            cachedWindEstimateResponses = keepEveryFirstItemLite(newWindEstimateResponses);
-        }
+    /**
+     * @return the hourly values of {@link #getLatest7Days()}, empty before the first update
+     */
+    public static TimeSeries getRealtimeSeries(RealtimeType type) {
+        return realtimeSeries.getOrDefault(type, TimeSeries.empty());
     }
 
-    public static void updateProductionEstimateData() {
-        final var start = getCurrentZonedDateTimeHourPrecision();
-        final var newProductionEstimateResponses = runQuery(createHourlyQuery(QueryType.PRODUCTION_ESTIMATE, start));
-        if (!newProductionEstimateResponses.isEmpty()) {
-            cachedProductionEstimateResponses = newProductionEstimateResponses;
-        }
-    }
-
-    public static void updateConsumptionEstimateData() {
-        final var start = getCurrentZonedDateTimeHourPrecision();
-        final var newConsumptionEstimateResponses = runQuery(createHourlyQuery(QueryType.CONSUMPTION_ESTIMATE, start));
-        if (!newConsumptionEstimateResponses.isEmpty()) {
-            cachedConsumptionEstimateResponses = keepEveryNthItem(newConsumptionEstimateResponses, 12);
-        }
-    }
-
-    public static List<FingridLiteResponse> runQuery(String query) {
-        final var apiKey = getFingridAPIKey();
-        final HttpRequest request;
-        HttpResponse<String> response;
-        try {
-            request = HttpRequest.newBuilder().uri(new URI(query)).GET().header("x-api-key", apiKey).build();
-            response = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build().send(request, HttpResponse.BodyHandlers.ofString());
-        } catch (URISyntaxException | IOException | InterruptedException e) {
-            throw new RuntimeException(e);
+    private static Map<RealtimeType, TimeSeries> createRealtimeSeries(FingridRealtimeResponse response) {
+        final var series = new EnumMap<RealtimeType, TimeSeries>(RealtimeType.class);
+        for (RealtimeType type : RealtimeType.values()) {
+            final var data = type.getter.apply(response);
+            final var times = new long[data.size()];
+            final var values = new double[data.size()];
+            for (int i = 0; i < data.size(); ++i) {
+                times[i] = data.get(i).startTime.toInstant().toEpochMilli();
+                values[i] = data.get(i).value;
+            }
+            series.put(type, new TimeSeries(times, values));
         }
-        final var gson = Converters.registerAll(new GsonBuilder()).create();
-        return gson.fromJson(response.body(), FingridLiteResponseWrapper.class).data;
+        return series;
     }
 
-    public static List<FingridLiteResponse> getWindEstimate() {
-        return cachedWindEstimateResponses;
+    public static DataCache<FingridRealtimeResponse> getRealtimeCache() {
+        return realtimeCache;
     }
 
-    public static List<FingridLiteResponse> getProductionEstimate() {
-        return cachedProductionEstimateResponses;
+    public static DataCache<List<FingridLiteResponse>> getWindEstimateCache() {
+        return windEstimateCache;
     }
 
-    public static List<FingridLiteResponse> getConsumptionEstimate() {
-        return cachedConsumptionEstimateResponses;
+    public static boolean updateWindEstimateData() {
+        return windEstimateCache.refresh(() -> {
+            final var start = getCurrentZonedDateTimeHourPrecision().toInstant();
+            final var newWindEstimateResponses = FingridDatasetClient.fetch(QueryType.WIND_PREDICTION, start, start.plus(estimateHorizon));
+            return newWindEstimateResponses == null || newWindEstimateResponses.isEmpty() ? null : keepEveryFirstItemLite(newWindEstimateResponses);
+        });
     }
 
-    public static String createHourlyQuery(QueryType queryType, ZonedDateTime start) {
-        var query = fingridHourlyBaseUrl + queryType.id + fingridHourlyUrlPostfix;
-        Map<String, String> requestParams = new HashMap<>();
-        requestParams.put("startTime", createDateTimeString(start));
-        return requestParams.keySet().stream().map(key -> {
-            //return key + "=" + Utils.encodeUrl(requestParams.get(key));
-            return key + "=" + requestParams.get(key);
-        }).collect(joining("&", query, ""));
+    public static List<FingridLiteResponse> getWindEstimate() {
+        return windEstimateCache.get();
     }
 
     private static String createFingridDateTimeString(LocalDateTime localDateTime) {
         return DateTimeFormatter.ofPattern("yyyy-MM-dd").format(localDateTime);
     }
 
-    private static String createDateTimeString(ZonedDateTime zonedDateTime) {
-        return DateTimeFormatter.ofPattern("yyyy-MM-dd").format(zonedDateTime) + "T" + DateTimeFormatter.ofPattern("HH:mm:ss").format(zonedDateTime);
-    }
-
     public static void writeToCSVFile() {
         final var realtimeDataForMonth = getRealtimeDataForMonth();
         final var lowestDay = realtimeDataForMonth.WindPower.stream().min(Comparator.comparing(item -> item.startTime)).get().startTime.truncatedTo(ChronoUnit.DAYS);
@@ -3,6 +3,8 @@ package com.vesanieminen.froniusvisualizer.services;
 import com.fatboyindustrial.gsonjavatime.Converters;
 import com.google.gson.GsonBuilder;
 import com.vesanieminen.froniusvisualizer.services.model.FmiObservationResponse;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.net.URI;
@@ -10,35 +12,44 @@ import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.TimeZone;
 
 import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
 
+@Slf4j
 public class FmiService {
     private static final String fmiApiBaseUrl = "https://www.ilmatieteenlaitos.fi/api/weather/observations?fmisid=%s&observations=true";
     private static final String observationPlaceFmisid = "101150"; // Hämeenlinna/Katinen, matches with the forecasts
+    private static final DateTimeFormatter fmiTimestampFormatter = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
 
-    private static LocalDateTime nextUpdate = LocalDateTime.now(fiZoneID).minusHours(1);
-    private static FmiObservationResponse lastResponse;
-    private static final SimpleDateFormat dateparser = new SimpleDateFormat("yyyyMMdd'T'HHmmss");
+    private static final DataCache<FmiObservationResponse> cache = new DataCache<>("FMI observations", "fmi-observations", FmiObservationResponse.class);
+    private static volatile TimeSeries temperatureSeries = TimeSeries.empty();
 
+    static {
+        cache.addListener(response -> temperatureSeries = createTemperatureSeries(response));
+        cache.publishTo(DataEvents.Source.WEATHER, response -> DataEvents.getRange(Arrays.stream(temperatureSeries.times()).mapToObj(Instant::ofEpochMilli), Duration.ofHours(1)));
+    }
 
     private static String buildFmiUrl() {
         return fmiApiBaseUrl.formatted(observationPlaceFmisid);
     }
 
-    private static boolean isCacheStale() {
-        return LocalDateTime.now(fiZoneID).compareTo(nextUpdate) > 0;
+    public static void restore() {
+        cache.restore();
+    }
+
+    public static boolean updateData() {
+        return cache.refresh(FmiService::fetchLatestObservations);
     }
 
     public static FmiObservationResponse fetchLatestObservations() {
-        final var nowWithoutMinutes = LocalDateTime.now(fiZoneID);
-        nextUpdate = nowWithoutMinutes.plusHours(1);
         final HttpRequest request;
         final HttpResponse<String> response;
 
@@ -50,28 +61,75 @@ public class FmiService {
         } catch (URISyntaxException | IOException | InterruptedException e) {
             throw new RuntimeException(e);
         }
+        return parseObservations(response.body());
+    }
+
+    /**
+     * Parses the observations of the FMI API and keeps the full hour observations.
+     *
+     * @return the observations or null if the body has none
+     */
+    public static FmiObservationResponse parseObservations(String body) {
         final var gson = Converters.registerAll(new GsonBuilder()).create();
-        lastResponse = gson.fromJson(response.body(), FmiObservationResponse.class);
+        final var newResponse = gson.fromJson(body, FmiObservationResponse.class);
+        if (newResponse == null || newResponse.getObservations() == null) {
+            return null;
+        }
 
-        final var fmiObservationsFiltered = Arrays.stream(lastResponse.getObservations()).filter(item -> FmiService.parseFmiTimestamp(item.getLocaltime(), item.getLocaltz()).getMinutes() == 0).toArray(FmiObservationResponse.FmiObservation[]::new);
-        lastResponse.setObservations(fmiObservationsFiltered);
+        // Keep the full hour observations only, the FMI timezones are whole hour offsets so UTC minutes are enough
+        final var fmiObservationsFiltered = Arrays.stream(newResponse.getObservations()).filter(item -> {
+            final var timestamp = parseFmiTimestamp(item.getLocaltime(), item.getLocaltz());
+            return timestamp != null && timestamp.getEpochSecond() % 3600 == 0;
+        }).toArray(FmiObservationResponse.FmiObservation[]::new);
+        newResponse.setObservations(fmiObservationsFiltered);
 
-        return lastResponse;
+        return newResponse;
     }
 
+    /**
+     * Returns the last good observations, refreshing is done by the {@link RefreshOrchestrator}.
+     */
     public static FmiObservationResponse getObservations() {
-        if (lastResponse == null || isCacheStale()) {
-            return fetchLatestObservations();
+        return cache.get();
+    }
+
+    /**
+     * The observed temperatures, parsed once per refresh.
+     */
+    public static TimeSeries getTemperatureSeries() {
+        return temperatureSeries;
+    }
+
+    public static DataCache<FmiObservationResponse> getCache() {
+        return cache;
+    }
+
+    private static TimeSeries createTemperatureSeries(FmiObservationResponse response) {
+        if (response.getObservations() == null) {
+            return TimeSeries.empty();
+        }
+        final var times = new ArrayList<Long>();
+        final var values = new ArrayList<Double>();
+        for (var observation : response.getObservations()) {
+            final var timestamp = parseFmiTimestamp(observation.getLocaltime(), observation.getLocaltz());
+            if (timestamp == null || observation.getTemperature() == null) {
+                continue;
+            }
+            times.add(timestamp.toEpochMilli());
+            values.add(observation.getTemperature().doubleValue());
         }
-        return lastResponse;
+        return new TimeSeries(times.stream().mapToLong(Long::longValue).toArray(), values.stream().mapToDouble(Double::doubleValue).toArray());
     }
 
-    public static Date parseFmiTimestamp(String fmiTimestamp, String fmiTimezone) {
+    public static Instant parseFmiTimestamp(String fmiTimestamp, String fmiTimezone) {
+        if (fmiTimestamp == null) {
+            return null;
+        }
         try {
-            dateparser.setTimeZone(fmiTimezone == null ? TimeZone.getTimeZone(fiZoneID) : (TimeZone.getTimeZone(fmiTimezone)));
-            return dateparser.parse(fmiTimestamp);
-        } catch (ParseException e) {
-            e.printStackTrace();
+            final var zone = fmiTimezone == null ? fiZoneID : ZoneId.of(fmiTimezone);
+            return LocalDateTime.parse(fmiTimestamp, fmiTimestampFormatter).atZone(zone).toInstant();
+        } catch (DateTimeException e) {
+            log.warn("Could not parse FMI timestamp {} {}", fmiTimestamp, fmiTimezone);
             return null;
         }
     }
@@ -0,0 +1,299 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.di.Instantiator;
+import com.vaadin.flow.function.DeploymentConfiguration;
+import com.vaadin.flow.i18n.I18NProvider;
+import com.vaadin.flow.router.Router;
+import com.vaadin.flow.server.RouteRegistry;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinContext;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import com.vaadin.flow.server.VaadinSession;
+import com.vesanieminen.froniusvisualizer.AppVersions;
+import com.vesanieminen.froniusvisualizer.services.FingridService.RealtimeType;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jol.vm.VM;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Memory footprint of the global data caches and of the sessions, for the admin view and an hourly log line that can
+ * be compared between releases.
+ * <p>
+ * The caches are sized as the whole object graph of their current values. A session is sized per UI as the objects
+ * reachable from the UI that are not shared: the walk stops at the global caches, the Vaadin service and session,
+ * Spring beans and the classes of the platform. The sizes of JDK collections are their elements and an estimate of
+ * the entries, so they are approximate but comparable between views and releases.
+ */
+@Service
+@Slf4j
+public class FootprintService implements VaadinServiceInitListener {
+
+    private static final long lockTimeoutMillis = 100;
+    // HashMap.Node with compressed references
+    private static final int mapEntryBytes = 32;
+    // Header and length of the byte array of a Latin-1 string
+    private static final int stringArrayBytes = 16;
+    private static final List<Class<?>> sharedTypes = List.of(Class.class, ClassLoader.class, Thread.class, VaadinSession.class, VaadinService.class,
+            VaadinContext.class, DeploymentConfiguration.class, Router.class, RouteRegistry.class, Instantiator.class, I18NProvider.class);
+    private static final List<String> sharedPackages = List.of("org.springframework.", "org.apache.", "jakarta.servlet.", "org.slf4j.", "ch.qos.logback.");
+    private static final ClassValue<Field[]> referenceFields = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            final var fields = new ArrayList<Field>();
+            for (Class<?> current = type; current != null && !isPlatformType(current); current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive() && field.trySetAccessible()) {
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(Field[]::new);
+        }
+    };
+    private static final ClassValue<Boolean> sharedClasses = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return isSharedType(type);
+        }
+    };
+
+    @Value("${footprint.view.budget.kb:2048}")
+    private long viewBudgetKb;
+    @Value("${footprint.sampled.sessions:20}")
+    private int sampledSessions;
+
+    @Autowired
+    AppVersions appVersions;
+
+    private final Set<VaadinSession> sessions = ConcurrentHashMap.newKeySet();
+
+    public record CacheFootprint(String name, long bytes, long objects) {
+    }
+
+    /**
+     * @param overBudget whether the largest sampled UI of the view exceeds the configured budget
+     */
+    public record ViewFootprint(String view, int samples, long averageBytes, long maxBytes, boolean overBudget) {
+    }
+
+    public record Report(Instant created, String version, int sessions, int sampledSessions, long viewBudgetBytes, List<CacheFootprint> caches, List<ViewFootprint> views) {
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        event.getSource().addSessionInitListener(sessionInitEvent -> sessions.add(sessionInitEvent.getSession()));
+        event.getSource().addSessionDestroyListener(sessionDestroyEvent -> sessions.remove(sessionDestroyEvent.getSession()));
+    }
+
+    public Report createReport() {
+        final var startTime = System.currentTimeMillis();
+        final Set<Object> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        final var caches = new ArrayList<CacheFootprint>();
+        globalCaches().forEach((name, supplier) -> {
+            final var walker = new Walker(Set.of());
+            walker.walk(supplier.get());
+            shared.addAll(walker.visited);
+            caches.add(new CacheFootprint(name, walker.bytes, walker.objects));
+        });
+        caches.sort(Comparator.comparingLong(CacheFootprint::bytes).reversed());
+
+        final var sample = new ArrayList<>(sessions);
+        Collections.shuffle(sample);
+        final var sizes = new HashMap<String, List<Long>>();
+        var sampled = 0;
+        for (VaadinSession session : sample.subList(0, Math.min(sampledSessions, sample.size()))) {
+            if (measureSession(session, shared, sizes)) {
+                ++sampled;
+            }
+        }
+        final var budget = viewBudgetKb * 1024;
+        final var views = new ArrayList<ViewFootprint>();
+        sizes.forEach((view, values) -> {
+            final var max = values.stream().mapToLong(Long::longValue).max().orElse(0);
+            final var average = (long) values.stream().mapToLong(Long::longValue).average().orElse(0);
+            views.add(new ViewFootprint(view, values.size(), average, max, max > budget));
+        });
+        views.sort(Comparator.comparingLong(ViewFootprint::maxBytes).reversed());
+        log.info("Created the footprint report of {} sessions in {} ms", sampled, System.currentTimeMillis() - startTime);
+        return new Report(Instant.now(), appVersions.getVersion(), sessions.size(), sampled, budget, caches, views);
+    }
+
+    @Scheduled(cron = "0 15 * * * *", zone = "Europe/Helsinki")
+    public void logReport() {
+        final var report = createReport();
+        final var cacheBytes = report.caches().stream().mapToLong(CacheFootprint::bytes).sum();
+        log.info("Footprint of version {}: caches {} kB, {} sessions", report.version(), cacheBytes / 1024, report.sessions());
+        for (ViewFootprint view : report.views()) {
+            if (view.overBudget()) {
+                log.warn("View {} is over the budget of {} kB: average {} kB, max {} kB in {} samples", view.view(), viewBudgetKb, view.averageBytes() / 1024, view.maxBytes() / 1024, view.samples());
+            }
+        }
+    }
+
+    /**
+     * @return false if the session was busy or it could not be walked
+     */
+    private boolean measureSession(VaadinSession session, Set<Object> shared, Map<String, List<Long>> sizes) {
+        final var lock = session.getLockInstance();
+        try {
+            if (lock == null || !lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            for (UI ui : session.getUIs()) {
+                final var walker = new Walker(shared);
+                walker.walk(ui);
+                sizes.computeIfAbsent(getViewName(ui), ignored -> new ArrayList<>()).add(walker.bytes);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.info("Could not measure a session: {}", e.toString());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String getViewName(UI ui) {
+        final var chain = ui.getInternals().getActiveRouterTargetsChain();
+        return chain.isEmpty() ? "None" : chain.get(0).getClass().getSimpleName();
+    }
+
+    private static Map<String, Supplier<Object>> globalCaches() {
+        final var caches = new LinkedHashMap<String, Supplier<Object>>();
+        caches.put("Price store", PriceStore::get);
+        caches.put("Nordpool", () -> NordpoolSpotService.getCache().get());
+        caches.put("Two year spot data", PriceCalculatorService::getLoadedSpotData);
+        caches.put("Fingrid realtime", () -> FingridService.getRealtimeCache().get());
+        caches.put("Fingrid realtime series", () -> {
+            final var series = new EnumMap<RealtimeType, Object>(RealtimeType.class);
+            for (RealtimeType type : RealtimeType.values()) {
+                series.put(type, FingridService.getRealtimeSeries(type));
+            }
+            return series;
+        });
+        caches.put("Fingrid estimates", FingridService::getWindEstimate);
+        caches.put("FMI", () -> FmiService.getCache().get());
+        caches.put("SpotHinta", () -> SpotHintaService.getCache().get());
+        caches.put("Zone prices", () -> {
+            final var prices = new EnumMap<BiddingZone, Object>(BiddingZone.class);
+            ZonePriceService.getCaches().forEach((zone, cache) -> prices.put(zone, cache.get()));
+            return prices;
+        });
+        caches.put("Chart series", () -> List.of(ChartSeriesCache.getGridSeries(), ChartSeriesCache.getTemperatureSeries(), ChartSeriesCache.getPriceSeries(BiddingZone.FI, true)));
+        return caches;
+    }
+
+    private static boolean isPlatformType(Class<?> type) {
+        final var name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.");
+    }
+
+    private static boolean isSharedType(Class<?> type) {
+        for (Class<?> sharedType : sharedTypes) {
+            if (sharedType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        final var name = type.getName();
+        for (String sharedPackage : sharedPackages) {
+            if (name.startsWith(sharedPackage)) {
+                return true;
+            }
+        }
+        return AnnotatedElementUtils.hasAnnotation(ClassUtils.getUserClass(type), Component.class);
+    }
+
+    /**
+     * Depth-first walk of an object graph with the JOL shallow sizes.
+     */
+    private static class Walker {
+
+        private final Set<Object> excluded;
+        private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final ArrayDeque<Object> stack = new ArrayDeque<>();
+        private long bytes;
+        private long objects;
+
+        Walker(Set<Object> excluded) {
+            this.excluded = excluded;
+        }
+
+        void walk(Object root) {
+            push(root);
+            while (!stack.isEmpty()) {
+                final var object = stack.pop();
+                bytes += VM.current().sizeOf(object);
+                ++objects;
+                final var type = object.getClass();
+                if (type.isArray()) {
+                    if (!type.getComponentType().isPrimitive()) {
+                        for (Object element : (Object[]) object) {
+                            push(element);
+                        }
+                    }
+                } else if (isPlatformType(type)) {
+                    // The internals of the JDK classes are not accessible, the collections are walked by their contents
+                    if (object instanceof String string) {
+                        bytes += stringArrayBytes + string.length();
+                    } else if (object instanceof Collection<?> collection) {
+                        collection.forEach(this::push);
+                    } else if (object instanceof Map<?, ?> map) {
+                        bytes += (long) map.size() * mapEntryBytes;
+                        map.forEach((key, value) -> {
+                            push(key);
+                            push(value);
+                        });
+                    }
+                } else {
+                    for (Field field : referenceFields.get(type)) {
+                        try {
+                            push(field.get(object));
+                        } catch (IllegalAccessException e) {
+                            // Not counted
+                        }
+                    }
+                }
+            }
+        }
+
+        private void push(Object object) {
+            if (object != null && !excluded.contains(object) && !sharedClasses.get(object.getClass()) && visited.add(object)) {
+                stack.push(object);
+            }
+        }
+    }
+
+}
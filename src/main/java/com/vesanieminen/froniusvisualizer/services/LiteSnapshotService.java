@@ -0,0 +1,256 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.vesanieminen.froniusvisualizer.services.FingridService.RealtimeType;
+import com.vesanieminen.froniusvisualizer.services.SeriesEncoder.Payload;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+import com.vesanieminen.froniusvisualizer.util.TranslationProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.enLocale;
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiLocale;
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+import static com.vesanieminen.froniusvisualizer.util.Utils.getNumberFormat;
+
+/**
+ * Pre-rendered snapshot of the landing chart and its key figures for the /lite page and /api/snapshot.json. These are
+ * plain cacheable responses without a Vaadin session, meant for the traffic spike when tomorrow's prices are published.
+ * <p>
+ * The snapshot is rendered once per data update and once per hour, as the current price changes with the hour.
+ */
+@Slf4j
+public class LiteSnapshotService {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final TranslationProvider translationProvider = new TranslationProvider();
+    private static final int chartWidth = 720;
+    private static final int chartHeight = 240;
+
+    private record Snapshot(long hour, Payload json, Map<Locale, Payload> html) {
+    }
+
+    private record Figures(Instant hour, double priceNow, double priceNextHour, DaySummaryIndex.DaySummary today, double sevenDayAverage, boolean hasTomorrow, TimeSeries prices, TimeSeries wind) {
+    }
+
+    private static volatile Snapshot snapshot;
+
+    static {
+        DataEvents.subscribe(DataEvents.Source.PRICES, event -> render());
+        DataEvents.subscribe(DataEvents.Source.FINGRID_REALTIME, event -> render());
+    }
+
+    public static Payload getJson() {
+        return getSnapshot().json();
+    }
+
+    /**
+     * @return the Finnish page for all but English
+     */
+    public static Payload getHtml(Locale locale) {
+        return getSnapshot().html().get(enLocale.getLanguage().equals(locale.getLanguage()) ? enLocale : fiLocale);
+    }
+
+    private static Snapshot getSnapshot() {
+        final var current = snapshot;
+        if (current == null || current.hour() != currentHour().toEpochMilli()) {
+            return renderIfStale();
+        }
+        return current;
+    }
+
+    /**
+     * The requests that queued for the lock at the change of the hour get the snapshot of the first one.
+     */
+    private static synchronized Snapshot renderIfStale() {
+        final var current = snapshot;
+        if (current != null && current.hour() == currentHour().toEpochMilli()) {
+            return current;
+        }
+        return render();
+    }
+
+    private static synchronized Snapshot render() {
+        final var startTime = System.currentTimeMillis();
+        final var figures = createFigures();
+        final var rendered = new Snapshot(figures.hour().toEpochMilli(), Payload.of(writeJson(figures), "application/json", false), Map.of(
+                fiLocale, Payload.of(writeHtml(figures, fiLocale), "text/html;charset=UTF-8", false),
+                enLocale, Payload.of(writeHtml(figures, enLocale), "text/html;charset=UTF-8", false)
+        ));
+        snapshot = rendered;
+        log.info("Rendered the lite snapshot in {} ms", System.currentTimeMillis() - startTime);
+        return rendered;
+    }
+
+    private static Instant currentHour() {
+        return Instant.now().truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static Figures createFigures() {
+        final var hour = currentHour();
+        final var store = PriceStore.get();
+        final var zone = BiddingZone.FI;
+        final var prices = ChartSeriesCache.getPriceSeries(zone, true).prices();
+        final var today = DaySummaryIndex.get(hour.atZone(fiZoneID).toLocalDate());
+        final var tomorrow = DaySummaryIndex.get(hour.atZone(fiZoneID).toLocalDate().plusDays(1));
+        // The chart also shows tomorrow, the average is of the last 7 days including today
+        final var startOfToday = hour.atZone(fiZoneID).truncatedTo(ChronoUnit.DAYS);
+        final var sevenDayAverage = store.average(zone, startOfToday.minusDays(6).toInstant(), startOfToday.plusDays(1).toInstant(), true);
+        return new Figures(hour,
+                store.get(zone, hour, true),
+                store.get(zone, hour.plus(1, ChronoUnit.HOURS), true),
+                today, sevenDayAverage, tomorrow != null, prices, FingridService.getRealtimeSeries(RealtimeType.WIND));
+    }
+
+    private static byte[] writeJson(Figures figures) {
+        final var outputStream = new ByteArrayOutputStream(8192);
+        try (var generator = jsonFactory.createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeStringField("generated", Instant.now().toString());
+            generator.writeStringField("zone", BiddingZone.FI.name());
+            generator.writeStringField("unit", "c/kWh");
+            generator.writeBooleanField("vat", true);
+            writeNumberOrNull(generator, "priceNow", figures.priceNow());
+            writeNumberOrNull(generator, "priceNextHour", figures.priceNextHour());
+            writeNumberOrNull(generator, "sevenDayAverage", figures.sevenDayAverage());
+            generator.writeBooleanField("tomorrowAvailable", figures.hasTomorrow());
+            if (figures.today() != null) {
+                final var today = figures.today();
+                generator.writeObjectFieldStart("today");
+                generator.writeNumberField("average", today.average());
+                generator.writeNumberField("min", today.min());
+                generator.writeNumberField("max", today.max());
+                if (today.cheapestHours() != null) {
+                    generator.writeObjectFieldStart("cheapest3Hours");
+                    generator.writeStringField("start", today.cheapestHours().from().toString());
+                    generator.writeStringField("end", today.cheapestHours().to().plus(1, ChronoUnit.HOURS).toString());
+                    generator.writeNumberField("average", today.cheapestHours().averagePrice());
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            writePoints(generator, "prices", figures.prices());
+            writePoints(generator, "wind", figures.wind());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void writeNumberOrNull(JsonGenerator generator, String name, double value) throws IOException {
+        if (Double.isNaN(value)) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    private static void writePoints(JsonGenerator generator, String name, TimeSeries series) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (int i = 0; i < series.size(); ++i) {
+            generator.writeStartArray();
+            generator.writeNumber(series.times()[i]);
+            generator.writeNumber(series.values()[i]);
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    private static byte[] writeHtml(Figures figures, Locale locale) {
+        final var numberFormat = getNumberFormat(locale, 2);
+        numberFormat.setMinimumFractionDigits(2);
+        final var dateTimeFormatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT).withLocale(locale).withZone(fiZoneID);
+        final var hourFormatter = DateTimeFormatter.ofPattern("HH:mm").withZone(fiZoneID);
+        final var html = new StringBuilder(16384);
+        html.append("<!DOCTYPE html><html lang=\"").append(locale.getLanguage()).append("\"><head><meta charset=\"utf-8\">")
+                .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">")
+                .append("<title>").append(translate("lite.title", locale)).append(" | Liukuri</title>")
+                .append("<style>body{font-family:system-ui,sans-serif;margin:0 auto;max-width:760px;padding:8px;color:#1a2433}")
+                .append("dl{display:flex;flex-wrap:wrap;gap:8px 24px}dt{font-size:.8em;color:#6b7785}dd{margin:0;font-size:1.3em}")
+                .append("svg{width:100%;height:auto}.price{fill:none;stroke:#1676f3;stroke-width:2}.now{stroke:#e8333e}.axis{stroke:#ccc}")
+                .append("small{color:#6b7785}</style></head><body>");
+        html.append("<h1>").append(translate("lite.title", locale)).append("</h1><dl>");
+        appendFigure(html, translate("Price now", locale), format(numberFormat, figures.priceNow()));
+        appendFigure(html, translate("Price in 1h", locale), format(numberFormat, figures.priceNextHour()));
+        if (figures.today() != null) {
+            final var today = figures.today();
+            appendFigure(html, translate("Day's average", locale), format(numberFormat, today.average()));
+            appendFigure(html, translate("Lowest / highest today", locale), format(numberFormat, today.min()) + " / " + format(numberFormat, today.max()));
+            if (today.cheapestHours() != null) {
+                appendFigure(html, translate("Cheapest 3h period", locale), hourFormatter.format(today.cheapestHours().from()) + " - "
+                        + hourFormatter.format(today.cheapestHours().to().plus(1, ChronoUnit.HOURS)) + ", " + format(numberFormat, today.cheapestHours().averagePrice()));
+            }
+        }
+        appendFigure(html, translate("7 day average", locale), format(numberFormat, figures.sevenDayAverage()));
+        html.append("</dl><p>").append(translate("lite.prices", locale)).append("</p>");
+        appendChart(html, figures, numberFormat);
+        html.append("<p><a href=\"/\">").append(translate("lite.open.full", locale)).append("</a></p>")
+                .append("<small>").append(translate("price.data.updated", locale)).append(": ").append(dateTimeFormatter.format(Instant.now())).append("</small>")
+                .append("</body></html>");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendFigure(StringBuilder html, String title, String value) {
+        html.append("<div><dt>").append(title).append("</dt><dd>").append(value).append("</dd></div>");
+    }
+
+    /**
+     * An inline SVG line of the hourly prices with a marker at the current hour, so the page needs no scripts.
+     */
+    private static void appendChart(StringBuilder html, Figures figures, NumberFormat numberFormat) {
+        final var prices = figures.prices();
+        if (prices.size() < 2) {
+            return;
+        }
+        final var start = prices.times()[0];
+        final var end = prices.times()[prices.size() - 1];
+        var min = 0d;
+        var max = 1d;
+        for (double value : prices.values()) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        final var top = 10;
+        final var plotHeight = chartHeight - 2 * top;
+        html.append("<svg viewBox=\"0 0 ").append(chartWidth).append(' ').append(chartHeight).append("\" role=\"img\">");
+        final var zeroY = top + plotHeight * max / (max - min);
+        html.append("<line class=\"axis\" x1=\"0\" x2=\"").append(chartWidth).append("\" y1=\"").append(Math.round(zeroY)).append("\" y2=\"").append(Math.round(zeroY)).append("\"/>");
+        html.append("<text x=\"2\" y=\"").append(top + 10).append("\" font-size=\"11\">").append(numberFormat.format(max)).append("</text>");
+        html.append("<polyline class=\"price\" points=\"");
+        for (int i = 0; i < prices.size(); ++i) {
+            final var x = (double) (prices.times()[i] - start) / (end - start) * chartWidth;
+            final var y = top + plotHeight * (max - prices.values()[i]) / (max - min);
+            html.append(Math.round(x * 10) / 10.0).append(',').append(Math.round(y * 10) / 10.0).append(' ');
+        }
+        html.append("\"/>");
+        final var now = figures.hour().toEpochMilli();
+        if (now >= start && now <= end) {
+            final var x = Math.round((double) (now - start) / (end - start) * chartWidth);
+            html.append("<line class=\"now\" x1=\"").append(x).append("\" x2=\"").append(x).append("\" y1=\"0\" y2=\"").append(chartHeight).append("\"/>");
+        }
+        html.append("</svg>");
+    }
+
+    private static String format(NumberFormat numberFormat, double value) {
+        return Double.isNaN(value) ? "-" : numberFormat.format(value);
+    }
+
+    private static String translate(String key, Locale locale) {
+        return translationProvider.getTranslation(key, locale);
+    }
+
+}
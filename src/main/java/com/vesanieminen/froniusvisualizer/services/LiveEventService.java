@@ -0,0 +1,245 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+
+/**
+ * Server-Sent Events for integrations, so that they do not need to poll the price API.
+ * <p>
+ * The event types are:
+ * <ul>
+ *     <li>prices: the price store changed, tomorrow tells whether the Finnish prices of tomorrow are available</li>
+ *     <li>hour: the hour rolled over, has the current prices of all zones with VAT. Also sent when connecting.</li>
+ *     <li>fingrid: the Fingrid realtime data was refreshed</li>
+ * </ul>
+ * The idle connections are async requests that do not hold a thread. Each event is serialized once and queued to every
+ * connection, a small pool drains the queues. The writes run on a separate pool and a drain waits for each write only
+ * up to {@link #sendTimeoutMillis}, so a client that does not read cannot stall the others. A connection whose write
+ * times out or whose queue is full is too slow to keep up and is closed, the EventSource of the client reconnects by
+ * itself.
+ * <p>
+ * Every connection holds one of the server's connections for as long as it is open, so the connections are capped
+ * below the server's limit to leave room for the other requests.
+ */
+@Service
+@Slf4j
+public class LiveEventService {
+
+    private static final long connectionTimeout = Duration.ofHours(1).toMillis();
+    private static final int maxQueuedEvents = 16;
+
+    @Value("${live.sender.threads:4}")
+    private int senderThreads;
+    @Value("${live.writer.threads:64}")
+    private int writerThreads;
+    @Value("${live.send.timeout.millis:5000}")
+    private long sendTimeoutMillis;
+    @Value("${server.tomcat.max-connections:8192}")
+    private int serverMaxConnections;
+    @Value("${live.reserved.connections:1024}")
+    private int reservedConnections;
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private int maxConnections;
+    private ExecutorService sender;
+    private ExecutorService writer;
+    private final AtomicLong eventId = new AtomicLong();
+    private final AtomicLong droppedConnections = new AtomicLong();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private record Connection(SseEmitter emitter, Queue<Set<ResponseBodyEmitter.DataWithMediaType>> queue, AtomicBoolean draining) {
+    }
+
+    public record PricesEvent(long version, String start, String end, boolean tomorrow) {
+    }
+
+    public record HourEvent(String start, Map<String, Double> prices) {
+    }
+
+    public record FingridEvent(long version, String start, String end) {
+    }
+
+    @PostConstruct
+    private void init() {
+        maxConnections = Math.max(0, serverMaxConnections - reservedConnections);
+        log.info("Accepting up to {} live event connections", maxConnections);
+        sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            final var thread = new Thread(runnable, "live-event-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            final var thread = new Thread(runnable, "live-event-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        DataEvents.subscribe(DataEvents.Source.PRICES, event -> broadcast("prices", new PricesEvent(event.version(), event.start().toString(), event.end().toString(), hasTomorrowsPrices())));
+        DataEvents.subscribe(DataEvents.Source.FINGRID_REALTIME, event -> broadcast("fingrid", new FingridEvent(event.version(), event.start().toString(), event.end().toString())));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        connections.forEach(connection -> connection.emitter().complete());
+        sender.shutdownNow();
+        writer.shutdownNow();
+    }
+
+    /**
+     * @return a new connection or null if the server has too many connections already
+     */
+    public SseEmitter connect() {
+        if (connections.size() >= maxConnections) {
+            return null;
+        }
+        final var connection = new Connection(new SseEmitter(connectionTimeout), new ArrayBlockingQueue<>(maxQueuedEvents), new AtomicBoolean());
+        connection.emitter().onCompletion(() -> connections.remove(connection));
+        connection.emitter().onTimeout(() -> connections.remove(connection));
+        connection.emitter().onError(e -> connections.remove(connection));
+        connections.add(connection);
+        enqueue(connection, createEvent("hour", createHourEvent()));
+        return connection.emitter();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getDroppedConnectionCount() {
+        return droppedConnections.get();
+    }
+
+    @Scheduled(cron = "0 0 * * * *", zone = "Europe/Helsinki")
+    public void sendHour() {
+        broadcast("hour", createHourEvent());
+    }
+
+    /**
+     * Keeps the idle connections open through proxies and notices the disconnected clients.
+     */
+    @Scheduled(fixedRate = 20_000)
+    public void sendHeartbeat() {
+        if (!connections.isEmpty()) {
+            broadcast(SseEmitter.event().comment("").build());
+        }
+    }
+
+    private void broadcast(String name, Object data) {
+        if (!connections.isEmpty()) {
+            broadcast(createEvent(name, data));
+        }
+    }
+
+    private void broadcast(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        for (Connection connection : connections) {
+            enqueue(connection, event);
+        }
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> createEvent(String name, Object data) {
+        try {
+            return SseEmitter.event().id(String.valueOf(eventId.incrementAndGet())).name(name).data(mapper.writeValueAsString(data), MediaType.APPLICATION_JSON).build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void enqueue(Connection connection, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        if (!connection.queue().offer(event)) {
+            closeSlowConnection(connection);
+            return;
+        }
+        if (connection.draining().compareAndSet(false, true)) {
+            sender.execute(() -> drain(connection));
+        }
+    }
+
+    private void drain(Connection connection) {
+        do {
+            Set<ResponseBodyEmitter.DataWithMediaType> event;
+            while ((event = connection.queue().poll()) != null) {
+                final var next = event;
+                final var write = writer.submit(() -> {
+                    connection.emitter().send(next);
+                    return null;
+                });
+                try {
+                    write.get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    write.cancel(true);
+                    closeSlowConnection(connection);
+                    return;
+                } catch (ExecutionException e) {
+                    // The client is gone
+                    connections.remove(connection);
+                    connection.queue().clear();
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            connection.draining().set(false);
+            // An event may have been queued after the poll but before the flag was cleared
+        } while (!connection.queue().isEmpty() && connection.draining().compareAndSet(false, true));
+    }
+
+    private void closeSlowConnection(Connection connection) {
+        if (connections.remove(connection)) {
+            droppedConnections.incrementAndGet();
+            log.info("Closing a live event connection that is too slow, {} connections left", connections.size());
+        }
+        connection.queue().clear();
+        // The emitter is locked for as long as a write blocks, so it is completed on a writer and not here
+        writer.execute(() -> connection.emitter().complete());
+    }
+
+    private HourEvent createHourEvent() {
+        final var hour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        final var prices = PriceStore.get();
+        final var current = new LinkedHashMap<String, Double>();
+        for (BiddingZone zone : BiddingZone.values()) {
+            final var price = prices.get(zone, hour, true);
+            if (!Double.isNaN(price)) {
+                current.put(zone.name(), price);
+            }
+        }
+        return new HourEvent(hour.toString(), current);
+    }
+
+    private static boolean hasTomorrowsPrices() {
+        final var lastTime = PriceStore.get().getLastTime(BiddingZone.FI);
+        final var lastHourOfTomorrow = ZonedDateTime.now(fiZoneID).truncatedTo(ChronoUnit.DAYS).plusDays(2).minusHours(1).toInstant();
+        return lastTime != null && !lastTime.isBefore(lastHourOfTomorrow);
+    }
+
+}
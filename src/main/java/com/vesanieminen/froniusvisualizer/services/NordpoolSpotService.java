@@ -32,23 +32,44 @@ import static com.vesanieminen.froniusvisualizer.util.Utils.numberFormat;
 @Slf4j
 public class NordpoolSpotService {
 
-    private static NordpoolResponse nordpoolResponse;
+    private static final DataCache<NordpoolResponse> cache = new DataCache<>("Nordpool", "nordpool", NordpoolResponse.class);
     public static final String nordPoolSpotFile = "nordpool-spot-data.json";
     private static final String url = "https://www.nordpoolspot.com/api/marketdata/page/35?currency=,,EUR,EUR";
     private static List<NordpoolPrice> nordpoolPrices;
     private static LinkedHashMap<Instant, Double> nordpoolPriceMap;
     public static int updated = 0;
 
-    public static void updateNordpoolData(boolean forceUpdate) {
+    static {
+        cache.addListener(nordpoolResponse -> {
+            nordpoolPrices = toPriceList(nordpoolResponse);
+            nordpoolPriceMap = toPriceMap(nordpoolResponse);
+            PriceStore.rebuild();
+        });
+    }
+
+    public static void restore() {
+        cache.restore();
+    }
+
+    /**
+     * @return false if the refresh failed, true if it succeeded or there was no new data to fetch
+     */
+    public static boolean updateNordpoolData(boolean forceUpdate) {
         if (hasBeenUpdatedSuccessfullyToday() && !forceUpdate) {
             log.info("skipped Nordpool update due to having been updated already today successfully");
-            return;
+            return true;
         }
         if (!isAfter_13_45(ZonedDateTime.now(fiZoneID)) && hasBeenUpdatedSuccessfullyYesterday() && !forceUpdate) {
             log.info("skipped Nordpool update due to not having new data available yet");
-            return;
+            return true;
         }
 
+        final var success = cache.refresh(NordpoolSpotService::fetchNordpoolData);
+        log.info("NordpoolService has been updated " + ++updated + " times.");
+        return success;
+    }
+
+    private static NordpoolResponse fetchNordpoolData() {
         final HttpRequest request;
         final HttpResponse<String> response;
         try {
@@ -59,16 +80,15 @@ public class NordpoolSpotService {
         }
         final var gson = Converters.registerAll(new GsonBuilder()).create();
         var newNordpoolResponse = gson.fromJson(response.body(), NordpoolResponse.class);
-        if (newNordpoolResponse.isValid()) {
-            nordpoolResponse = newNordpoolResponse;
-            nordpoolPrices = toPriceList(nordpoolResponse);
-            nordpoolPriceMap = toPriceMap(nordpoolResponse);
-        }
-        log.info("NordpoolService has been updated " + ++updated + " times.");
+        return newNordpoolResponse != null && newNordpoolResponse.isValid() ? newNordpoolResponse : null;
     }
 
     public static NordpoolResponse getLatest7Days() {
-        return nordpoolResponse;
+        return cache.get();
+    }
+
+    public static DataCache<NordpoolResponse> getCache() {
+        return cache;
     }
 
     public static void writeFile(HttpResponse<String> response) {
@@ -0,0 +1,145 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.martijndwars.webpush.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Pending push deliveries in the notification_outbox table, so that the planned notifications survive a restart
+ * and several instances can share the sending. A delivery is claimed by moving its next attempt past a lease, a
+ * crashed worker's claims become available again when the lease ends. The deliveries are at least once.
+ * <p>
+ * The rows stay as the record of what was sent until they are cleaned up.
+ */
+@Repository
+@Slf4j
+public class NotificationOutbox {
+
+    public enum Status {
+        PENDING, SENT, GONE, FAILED, EXPIRED
+    }
+
+    /**
+     * @param attempts the number of claims including this one
+     */
+    public record Entry(long id, int attempts, PushDeliveryService.Delivery delivery) {
+    }
+
+    /**
+     * @param nextAttemptAt the retry time of a pending delivery
+     */
+    public record Completion(long id, Status status, int statusCode, Instant nextAttemptAt) {
+    }
+
+    @Autowired
+    NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds the messages of a notification time in one batch. An instance that enqueues the same time again adds
+     * nothing. The hour column is the notification time, which need not be a full hour.
+     *
+     * @param payloads the message per subscription
+     * @return the number of added deliveries
+     */
+    public int enqueue(Instant hour, Instant expiresAt, Map<UUID, String> payloads) {
+        final var parameters = payloads.entrySet().stream().map(entry -> new MapSqlParameterSource()
+                .addValue("subscriptionId", entry.getKey())
+                .addValue("payload", entry.getValue())
+                .addValue("hour", Timestamp.from(hour))
+                .addValue("expiresAt", Timestamp.from(expiresAt))).toArray(SqlParameterSource[]::new);
+        final var counts = jdbcTemplate.batchUpdate("""
+                INSERT INTO notification_outbox (subscription_id, payload, hour, expires_at)
+                VALUES (:subscriptionId, :payload, :hour, :expiresAt)
+                ON CONFLICT (subscription_id, hour) DO NOTHING
+                """, parameters);
+        var added = 0;
+        for (int count : counts) {
+            // The driver may report an unknown count for a batch
+            added += count < 0 ? 1 : count;
+        }
+        return added;
+    }
+
+    /**
+     * Claims the due deliveries that no other worker holds, the claim is released by {@link #complete} or by the lease
+     * ending.
+     */
+    public List<Entry> claim(int limit, Duration lease) {
+        final var parameters = new MapSqlParameterSource()
+                .addValue("limit", limit)
+                .addValue("leaseSeconds", lease.toSeconds());
+        return jdbcTemplate.query("""
+                UPDATE notification_outbox o
+                SET attempts = o.attempts + 1, next_attempt_at = now() + make_interval(secs => :leaseSeconds)
+                FROM (
+                    SELECT id FROM notification_outbox
+                    WHERE status = 'PENDING' AND next_attempt_at <= now() AND expires_at > now()
+                    ORDER BY next_attempt_at
+                    LIMIT :limit
+                    FOR UPDATE SKIP LOCKED
+                ) claimed, subscription s
+                WHERE o.id = claimed.id AND s.id = o.subscription_id
+                RETURNING o.id, o.attempts, o.subscription_id, o.payload, s.endpoint, s.p256dh, s.auth
+                """, parameters, (rs, rowNum) -> new Entry(rs.getLong("id"), rs.getInt("attempts"), new PushDeliveryService.Delivery(
+                rs.getObject("subscription_id", UUID.class),
+                new Subscription(rs.getString("endpoint"), new Subscription.Keys(rs.getString("p256dh"), rs.getString("auth"))),
+                rs.getString("payload"))));
+    }
+
+    /**
+     * Stores the results of claimed deliveries. A pending delivery is retried when its lease is replaced with the
+     * given retry time.
+     */
+    public void complete(List<Completion> completions) {
+        final var parameters = completions.stream().map(completion -> new MapSqlParameterSource()
+                .addValue("id", completion.id())
+                .addValue("status", completion.status().name())
+                .addValue("lastStatus", completion.statusCode())
+                .addValue("nextAttemptAt", Timestamp.from(completion.nextAttemptAt()))).toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                UPDATE notification_outbox
+                SET status = :status, last_status = :lastStatus, next_attempt_at = :nextAttemptAt,
+                    sent_at = CASE WHEN :status = 'SENT' THEN now() END
+                WHERE id = :id
+                """, parameters);
+    }
+
+    /**
+     * Marks the pending deliveries past their expiry and deletes the rows that are older than the retention.
+     */
+    public void cleanUp(Duration retention) {
+        final var expired = jdbcTemplate.update("UPDATE notification_outbox SET status = 'EXPIRED' WHERE status = 'PENDING' AND expires_at <= now()", Map.of());
+        final var deleted = jdbcTemplate.update("DELETE FROM notification_outbox WHERE created_at < now() - make_interval(secs => :retentionSeconds)",
+                Map.of("retentionSeconds", retention.toSeconds()));
+        if (expired > 0 || deleted > 0) {
+            log.info("Expired {} and deleted {} outbox deliveries", expired, deleted);
+        }
+    }
+
+    /**
+     * @return the number of deliveries per status of the latest enqueued hour
+     */
+    public Map<Status, Long> getLatestHourStatus() {
+        final var counts = new LinkedHashMap<Status, Long>();
+        jdbcTemplate.query("""
+                SELECT status, count(*) AS count FROM notification_outbox
+                WHERE hour = (SELECT max(hour) FROM notification_outbox)
+                GROUP BY status ORDER BY status
+                """, (RowCallbackHandler) rs -> counts.put(Status.valueOf(rs.getString("status")), rs.getLong("count")));
+        return counts;
+    }
+
+}
@@ -0,0 +1,200 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.vesanieminen.froniusvisualizer.services.model.PriceNotification;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Plans the notifications of the known prices ahead of time. When the prices are published every rule is evaluated
+ * once over the whole known horizon against a {@link PriceContext} shared by all rules, and the notifications wait in
+ * a queue ordered by their time. A timer wakes up at the time of the next one and hands the due notifications over to
+ * be sent.
+ * <p>
+ * A subscription is planned again when its rules change on this instance. The rules may also change or be deleted on
+ * another instance, so the due notifications are checked against the current rules before they are handed over and
+ * the ones whose rule is gone, disabled or has a newer version are dropped. The notifications of a subscription at the
+ * same time are merged into one message. If the hand-over fails the due notifications are put back in the queue and
+ * tried again after a while.
+ * <p>
+ * A rule may warn a number of minutes before it fires instead of notifying when it fires.
+ */
+@Slf4j
+public class NotificationPlanner {
+
+    /**
+     * @param ruleVersion the version of the rule that was planned
+     * @param text        the price information of the rule types that fire at the time
+     */
+    public record Planned(Instant time, UUID subscriptionId, UUID ruleId, int ruleVersion, String title, String text, String extraMsg) {
+    }
+
+    private static final Duration retryDelay = Duration.ofMinutes(1);
+
+    private final Supplier<List<PriceNotification>> allRules;
+    private final Function<UUID, List<PriceNotification>> subscriptionRules;
+    private final Function<Set<UUID>, Map<UUID, Integer>> currentVersions;
+    private final BiConsumer<Instant, Map<UUID, Planned>> sink;
+    private final PriorityQueue<Planned> queue = new PriorityQueue<>(Comparator.comparing(Planned::time));
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final var thread = new Thread(runnable, "notification-planner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> wakeUp;
+    private volatile PriceContext context;
+
+    /**
+     * @param allRules          the enabled rules of all subscriptions
+     * @param subscriptionRules the rules of a subscription
+     * @param currentVersions   the current versions of the given rules that still exist and are enabled
+     * @param sink              receives the due notifications of a time, merged per subscription
+     */
+    public NotificationPlanner(Supplier<List<PriceNotification>> allRules, Function<UUID, List<PriceNotification>> subscriptionRules,
+                               Function<Set<UUID>, Map<UUID, Integer>> currentVersions, BiConsumer<Instant, Map<UUID, Planned>> sink) {
+        this.allRules = allRules;
+        this.subscriptionRules = subscriptionRules;
+        this.currentVersions = currentVersions;
+        this.sink = sink;
+    }
+
+    /**
+     * Plans all rules from the given time on, replacing the earlier plan.
+     *
+     * @param from the start of the planning, earlier than now to catch up the notifications missed during a restart
+     */
+    public void plan(Instant from) {
+        plan(PriceContext.create(from), from);
+    }
+
+    /**
+     * Plans all rules against the given prices from the given time on, replacing the earlier plan.
+     */
+    public void plan(PriceContext priceContext, Instant from) {
+        final var startTime = System.currentTimeMillis();
+        final var rules = allRules.get();
+        final var planned = evaluate(rules, priceContext, from);
+        synchronized (this) {
+            context = priceContext;
+            queue.clear();
+            queue.addAll(planned);
+            arm();
+        }
+        log.info("Planned {} notifications of {} rules in {} ms", planned.size(), rules.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Replaces the planned notifications of a subscription whose rules have changed.
+     */
+    public void replan(UUID subscriptionId) {
+        final var rules = subscriptionRules.apply(subscriptionId).stream().filter(PriceNotification::isEnabled).toList();
+        final var now = Instant.now();
+        var priceContext = context;
+        if (priceContext == null || priceContext.getVersion() != PriceStore.get().version()) {
+            priceContext = PriceContext.create(now);
+        }
+        final var planned = evaluate(rules, priceContext, now);
+        synchronized (this) {
+            queue.removeIf(item -> item.subscriptionId().equals(subscriptionId));
+            queue.addAll(planned);
+            arm();
+        }
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private List<Planned> evaluate(List<PriceNotification> rules, PriceContext context, Instant from) {
+        final var planned = new ArrayList<Planned>();
+        for (PriceNotification rule : rules) {
+            final var prewarn = rule.getPrewarn() == null ? 0 : Math.max(0, rule.getPrewarn());
+            for (PriceContext.Firing ruleFiring : context.getFirings(rule)) {
+                final var firing = prewarn > 0 ? ruleFiring.ahead(prewarn) : ruleFiring;
+                if (!firing.time().isBefore(from)) {
+                    planned.add(new Planned(firing.time(), rule.getSubscriptionId(), rule.getId(), rule.getVersion(), firing.title(), firing.text(),
+                            rule.getExtraMsg() == null ? "" : rule.getExtraMsg()));
+                }
+            }
+        }
+        return planned;
+    }
+
+    private synchronized void arm() {
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        final var next = queue.peek();
+        if (next != null) {
+            wakeUp = timer.schedule(() -> fireDue(Instant.now()), Math.max(0, Duration.between(Instant.now(), next.time()).toMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hands over the notifications that are due at the given time. The timer calls this when the next one is due.
+     */
+    public void fireDue(Instant now) {
+        final var items = new ArrayList<Planned>();
+        synchronized (this) {
+            while (!queue.isEmpty() && !queue.peek().time().isAfter(now)) {
+                items.add(queue.poll());
+            }
+        }
+        try {
+            final var versions = items.isEmpty() ? Map.<UUID, Integer>of() : currentVersions.apply(items.stream().map(Planned::ruleId).collect(Collectors.toSet()));
+            final var due = new LinkedHashMap<Instant, Map<UUID, Planned>>();
+            var dropped = 0;
+            for (Planned item : items) {
+                if (!Integer.valueOf(item.ruleVersion()).equals(versions.get(item.ruleId()))) {
+                    ++dropped;
+                    continue;
+                }
+                due.computeIfAbsent(item.time(), ignored -> new LinkedHashMap<>()).merge(item.subscriptionId(), item, NotificationPlanner::merge);
+            }
+            if (dropped > 0) {
+                log.info("Dropped {} planned notifications of changed or deleted rules", dropped);
+            }
+            due.forEach(sink);
+        } catch (RuntimeException e) {
+            // The outbox ignores the notifications of a time that were handed over before the failure
+            log.warn("Handing over the planned notifications failed, retrying in {} s", retryDelay.toSeconds(), e);
+            synchronized (this) {
+                queue.addAll(items);
+                if (wakeUp != null) {
+                    wakeUp.cancel(false);
+                }
+                wakeUp = timer.schedule(() -> fireDue(Instant.now()), retryDelay.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        arm();
+    }
+
+    private static Planned merge(Planned first, Planned second) {
+        final var text = first.text().equals(second.text()) ? first.text() : first.text() + " " + second.text();
+        final var extraMsg = List.of(first.extraMsg(), second.extraMsg()).stream().filter(message -> !message.isBlank()).distinct().collect(Collectors.joining(" "));
+        return new Planned(first.time(), first.subscriptionId(), first.ruleId(), first.ruleVersion(), first.title(), text, extraMsg);
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.vesanieminen.froniusvisualizer.services;
 
 import com.vesanieminen.froniusvisualizer.services.model.PriceNotification;
-import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 
 import java.util.List;
@@ -12,4 +11,6 @@ public interface NotificationRepository extends CrudRepository<PriceNotification
     List<PriceNotification> findBySubscriptionId(UUID userId);
 
     void deleteAllBySubscriptionId(UUID userId);
+
+    List<PriceNotification> findByEnabledTrue();
 }
@@ -0,0 +1,144 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.vesanieminen.froniusvisualizer.services.model.NotificationRuleType;
+import com.vesanieminen.froniusvisualizer.services.model.PriceNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Saves the notification settings of a subscription as a whole. A save is one transaction with a constant number of
+ * statements however many rules there are: the subscription row is locked together with reading the versions of its
+ * rules, the rules are upserted in one batch and the rules that are not in the save are deleted.
+ * <p>
+ * The rules are versioned like with {@link org.springframework.data.annotation.Version}: a save that has an older
+ * version of a rule than the database, or a rule that has been deleted meanwhile, fails with an
+ * {@link OptimisticLockingFailureException} and nothing is saved. The rules keep the order of the save.
+ */
+@Repository
+public class NotificationRules {
+
+    private static final String selectRules = """
+            SELECT id, version, subscription_id, enabled, price, up, extra_msg, rule_type, param, prewarn
+            FROM notification WHERE subscription_id = :subscriptionId ORDER BY ordinal NULLS LAST, id
+            """;
+
+    @Autowired
+    NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return the rules of the subscription in the order they were saved
+     */
+    public List<PriceNotification> findBySubscriptionId(UUID subscriptionId) {
+        return jdbcTemplate.query(selectRules, Map.of("subscriptionId", subscriptionId), NotificationRules::toRule);
+    }
+
+    /**
+     * @param rules the rules as the client has them, a rule of version 0 is new
+     * @return the saved rules with their new versions, empty if the subscription does not exist
+     * @throws OptimisticLockingFailureException if a rule has been changed or deleted since the client read it
+     */
+    @Transactional
+    public List<PriceNotification> replace(UUID subscriptionId, List<PriceNotification> rules) {
+        final var versions = new HashMap<UUID, Integer>();
+        final var subscriptions = jdbcTemplate.query("""
+                SELECT s.id AS subscription_id, n.id, n.version FROM subscription s
+                LEFT JOIN notification n ON n.subscription_id = s.id
+                WHERE s.id = :subscriptionId FOR UPDATE OF s
+                """, Map.of("subscriptionId", subscriptionId), (rs, rowNum) -> {
+            final var id = rs.getObject("id", UUID.class);
+            if (id != null) {
+                versions.put(id, rs.getInt("version"));
+            }
+            return rs.getObject("subscription_id", UUID.class);
+        });
+        if (subscriptions.isEmpty()) {
+            return List.of();
+        }
+        for (PriceNotification rule : rules) {
+            final var current = versions.get(rule.getId());
+            if (current == null ? rule.getVersion() != 0 : current != rule.getVersion()) {
+                throw new OptimisticLockingFailureException("The notification " + rule.getId() + " of " + subscriptionId + " has been changed or deleted meanwhile");
+            }
+        }
+        if (!rules.isEmpty()) {
+            final var parameters = new SqlParameterSource[rules.size()];
+            for (int i = 0; i < rules.size(); ++i) {
+                final var rule = rules.get(i);
+                parameters[i] = new MapSqlParameterSource()
+                        .addValue("id", rule.getId())
+                        .addValue("version", rule.getVersion())
+                        .addValue("subscriptionId", subscriptionId)
+                        .addValue("enabled", rule.isEnabled())
+                        .addValue("price", rule.getPrice())
+                        .addValue("up", rule.isUp())
+                        .addValue("extraMsg", rule.getExtraMsg())
+                        .addValue("ruleType", (rule.getRuleType() == null ? NotificationRuleType.THRESHOLD : rule.getRuleType()).name())
+                        .addValue("param", rule.getParam())
+                        .addValue("prewarn", rule.getPrewarn())
+                        .addValue("ordinal", i);
+            }
+            // The first version is 1 like with Spring Data. A rule id of another subscription or an older version is left
+            // as it is and fails the save below
+            final var counts = jdbcTemplate.batchUpdate("""
+                    INSERT INTO notification (id, version, subscription_id, enabled, price, up, extra_msg, rule_type, param, prewarn, ordinal)
+                    VALUES (:id, 1, :subscriptionId, :enabled, :price, :up, :extraMsg, :ruleType, :param, :prewarn, :ordinal)
+                    ON CONFLICT (id) DO UPDATE SET version = COALESCE(notification.version, 0) + 1, enabled = EXCLUDED.enabled, price = EXCLUDED.price,
+                        up = EXCLUDED.up, extra_msg = EXCLUDED.extra_msg, rule_type = EXCLUDED.rule_type, param = EXCLUDED.param,
+                        prewarn = EXCLUDED.prewarn, ordinal = EXCLUDED.ordinal
+                    WHERE notification.subscription_id = EXCLUDED.subscription_id AND COALESCE(notification.version, 0) = :version
+                    """, parameters);
+            for (int i = 0; i < counts.length; ++i) {
+                // The driver may report an unknown count for a batch
+                if (counts[i] == 0) {
+                    throw new OptimisticLockingFailureException("The notification " + rules.get(i).getId() + " could not be saved for " + subscriptionId);
+                }
+            }
+            jdbcTemplate.update("DELETE FROM notification WHERE subscription_id = :subscriptionId AND id NOT IN (:ids)",
+                    new MapSqlParameterSource("subscriptionId", subscriptionId).addValue("ids", rules.stream().map(PriceNotification::getId).toList()));
+        } else {
+            jdbcTemplate.update("DELETE FROM notification WHERE subscription_id = :subscriptionId", Map.of("subscriptionId", subscriptionId));
+        }
+        return findBySubscriptionId(subscriptionId);
+    }
+
+    /**
+     * @return the versions of the given rules that exist and are enabled
+     */
+    public Map<UUID, Integer> getEnabledVersions(Collection<UUID> ruleIds) {
+        final var versions = new HashMap<UUID, Integer>();
+        jdbcTemplate.query("SELECT id, version FROM notification WHERE enabled AND id IN (:ids)", Map.of("ids", ruleIds),
+                (RowCallbackHandler) rs -> versions.put(rs.getObject("id", UUID.class), rs.getInt("version")));
+        return versions;
+    }
+
+    private static PriceNotification toRule(ResultSet rs, int rowNum) throws SQLException {
+        final var rule = new PriceNotification();
+        rule.setId(rs.getObject("id", UUID.class));
+        rule.setVersion(rs.getInt("version"));
+        rule.setSubscriptionId(rs.getObject("subscription_id", UUID.class));
+        rule.setEnabled(rs.getBoolean("enabled"));
+        rule.setPrice(rs.getDouble("price"));
+        rule.setUp(rs.getBoolean("up"));
+        rule.setExtraMsg(rs.getString("extra_msg"));
+        rule.setRuleType(NotificationRuleType.valueOf(rs.getString("rule_type")));
+        final var param = rs.getBigDecimal("param");
+        rule.setParam(param == null ? null : param.doubleValue());
+        rule.setPrewarn(rs.getObject("prewarn", Integer.class));
+        return rule;
+    }
+
+}
@@ -1,39 +1,31 @@
 package com.vesanieminen.froniusvisualizer.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.vesanieminen.froniusvisualizer.services.model.NordpoolPrice;
 import com.vesanieminen.froniusvisualizer.services.model.NotificationSubscription;
 import com.vesanieminen.froniusvisualizer.services.model.PriceNotification;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import nl.martijndwars.webpush.Notification;
-import nl.martijndwars.webpush.PushService;
 import nl.martijndwars.webpush.Subscription;
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpResponse;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.jose4j.lang.JoseException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.security.GeneralSecurityException;
-import java.security.Security;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalTime;
-import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -41,10 +33,6 @@ public class NotificationService {
     
     @Value("${vapid.public.key}")
     private String publicKey;
-    @Value("${vapid.private.key}")
-    private String privateKey;
-    @Value("${vapid.subject}")
-    private String subject;
 
     @Autowired
     SubscriptionRepository subscriptionRepository;
@@ -52,129 +40,164 @@ public class NotificationService {
     @Autowired
     NotificationRepository repository;
 
-    private PushService pushService;
+    @Autowired
+    PushDeliveryService pushDeliveryService;
+
+    @Autowired
+    NotificationOutbox outbox;
+
+    @Autowired
+    NotificationRules notificationRules;
+
+    @Value("${notification.outbox.max.attempts:5}")
+    private int maxAttempts;
+    @Value("${notification.outbox.retry.backoff.seconds:30}")
+    private long retryBackoffSeconds;
+
+    private static final int outboxBatchSize = 500;
+    // A claimed delivery is retried by any instance after this
+    private static final Duration outboxLease = Duration.ofMinutes(2);
+    private static final Duration outboxRetention = Duration.ofDays(7);
+    private static final Duration outboxPollInterval = Duration.ofSeconds(10);
+
+    // The notifications of this long before a restart are still sent, the outbox drops the ones that were queued
+    private static final Duration catchUp = Duration.ofMinutes(10);
+
+    private NotificationPlanner planner;
+    private final AtomicLong removedSubscriptions = new AtomicLong();
+    private final ScheduledExecutorService outboxWorker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final var thread = new Thread(runnable, "notification-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     File uidsubfile = new File("uidsub.json");
     File notificationsfile = new File("notifications.json");
     
     @PostConstruct
-    private void init() throws GeneralSecurityException {
-        Security.addProvider(new BouncyCastleProvider());
-        pushService = new PushService(publicKey, privateKey, subject);
+    private void init() {
+        planner = new NotificationPlanner(repository::findByEnabledTrue, repository::findBySubscriptionId, notificationRules::getEnabledVersions, this::queue);
+        planner.plan(Instant.now().minus(catchUp));
+        DataEvents.subscribe(DataEvents.Source.PRICES, event -> planner.plan(Instant.now()));
+        // Picks up the retries, the deliveries left by a restart and the ones queued by other instances
+        outboxWorker.scheduleWithFixedDelay(this::processOutbox, outboxPollInterval.toMillis(), outboxPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        planner.shutdown();
+        outboxWorker.shutdownNow();
     }
 
     public List<PriceNotification> listNotifications(UUID userId) {
-        return new ArrayList<>(repository.findBySubscriptionId(userId));
+        return new ArrayList<>(notificationRules.findBySubscriptionId(userId));
     }
 
-    public void saveNotifications(UUID userId, List<PriceNotification> notifications) {
+    /**
+     * Replaces the notifications of the subscription in one transaction.
+     *
+     * @return the saved notifications
+     * @throws org.springframework.dao.OptimisticLockingFailureException if another device has changed them meanwhile
+     */
+    public List<PriceNotification> saveNotifications(UUID userId, List<PriceNotification> notifications) {
         log.info("Updating notifications for " + userId);
-        Instant now = Instant.now().truncatedTo(ChronoUnit.HOURS);
-
-        for (PriceNotification notification : notifications) {
-            notification.setSubscriptionId(userId);
-        }
-        repository.saveAll(notifications);
-        repository.findBySubscriptionId(userId).forEach(n -> {
-            if (!notifications.contains(n)) {
-                repository.delete(n);
-            }
-        });
+        final var saved = notificationRules.replace(userId, notifications);
+        planner.replan(userId);
+        return saved;
     }
 
     private void clearAll(UUID userId) {
         repository.deleteAllBySubscriptionId(userId);
     }
 
-    @Scheduled(cron = "0 0 * * * *")
-    public void sendNotifications() {
-        log.info("Starting to send hourly notifications...");
-
-        Instant now = Instant.now().truncatedTo(ChronoUnit.HOURS);
-        Instant nowMinus1Hour = now.minus(1, ChronoUnit.HOURS);
+    /**
+     * Queues the planned notifications of a time to the outbox and sends them.
+     */
+    private void queue(Instant time, Map<UUID, NotificationPlanner.Planned> notifications) {
+        final var payloads = new LinkedHashMap<UUID, String>(notifications.size());
+        notifications.forEach((subscriptionId, planned) -> {
+            final var body = planned.extraMsg().isBlank() ? planned.text() : planned.text() + " " + planned.extraMsg();
+            payloads.put(subscriptionId, toJson(new Message(planned.title(), body)));
+        });
+        final var queued = outbox.enqueue(time, time.plus(1, ChronoUnit.HOURS), payloads);
+        log.info("Queued " + queued + " of " + payloads.size() + " notifications for " + time);
+        outboxWorker.execute(this::processOutbox);
+    }
 
-        List<NordpoolPrice> latest7DaysList = NordpoolSpotService.getLatest7DaysList();
-        NordpoolPrice prev = latest7DaysList.stream().filter(p->p.timeInstant().equals(nowMinus1Hour)).findFirst().orElse(null);
-        NordpoolPrice current = latest7DaysList.stream().filter(p->p.timeInstant().equals(now)).findFirst().orElse(null);
-        if(prev == null || current == null) {
-            log.info("Couldn't find previous or current price, skipping");
-            return;
-        }
-        final double priceNow = current.price()*getVat(current.timeInstant());
-        final double previousPrice = prev.price()*getVat(prev.timeInstant());
-        final boolean up = priceNow > previousPrice;
-
-        List<NordpoolPrice> futurePrices = latest7DaysList.subList(latest7DaysList.indexOf(current), latest7DaysList.size());
-        Iterator<NordpoolPrice> priceIterator = futurePrices.iterator();
-        NordpoolPrice nextPeakLow = current;
-        while (priceIterator.hasNext()) {
-            NordpoolPrice price = priceIterator.next();
-            if(up) {
-                if(price.price() > current.price()) {
-                    nextPeakLow = price;
-                } else {
-                    break;
-                }
-            } else {
-                if(price.price() < current.price()) {
-                    nextPeakLow = price;
-                } else {
-                    break;
+    /**
+     * Sends the due deliveries of the outbox until there are none left, also the ones queued by other instances.
+     */
+    private void processOutbox() {
+        try {
+            List<NotificationOutbox.Entry> entries;
+            while (!(entries = outbox.claim(outboxBatchSize, outboxLease)).isEmpty()) {
+                final var results = pushDeliveryService.deliver(entries.stream().map(NotificationOutbox.Entry::delivery).toList());
+                final var completions = new ArrayList<NotificationOutbox.Completion>(entries.size());
+                for (int i = 0; i < entries.size(); ++i) {
+                    completions.add(toCompletion(entries.get(i), results.get(i)));
                 }
+                outbox.complete(completions);
+                removeGoneSubscriptions(results);
             }
+        } catch (RuntimeException e) {
+            // The worker must keep running, the claims are retried when their lease ends
+            log.warn("Processing the notification outbox failed", e);
         }
-        final String peakLowMsg;
-        if(nextPeakLow != current) {
-            LocalTime peakTime = LocalTime.ofInstant(nextPeakLow.timeInstant(), ZoneId.of("Europe/Helsinki"));
-            peakLowMsg = (" Next " + (up ? "peak" : "low") + ": %.2f c/kWh at %s.").formatted(nextPeakLow.price()*getVat(nextPeakLow.timeInstant()), peakTime);
-        } else {
-            peakLowMsg = "";
-        }
+    }
 
-        final double lowerBound = up ? previousPrice : priceNow;
-        final double upperBound = up ? priceNow : previousPrice;
-        Set<PriceNotification> orphaned = new HashSet<>();
-
-        // TODO enabled, bounds & direction to query
-        Iterable<PriceNotification> all = repository.findAll();
-        all.forEach(pn -> {
-            if(pn.isEnabled() && pn.isUp() == up && pn.getPrice() >= lowerBound && pn.getPrice() <= upperBound) {
-                String body =
-                        "Price now %.2f c/kWh. %s".formatted(priceNow, pn.getExtraMsg())
-                                + peakLowMsg;
-                String title = up ? "Prices going up!": "Prices going down!";
-                Message message = new Message(title, body);
-                Subscription s = getSubscription(pn.getSubscriptionId());
-                sendNotification(s, message);
-            }
-        });
+    private NotificationOutbox.Completion toCompletion(NotificationOutbox.Entry entry, PushDeliveryService.DeliveryResult result) {
+        final var now = Instant.now();
+        return switch (result.outcome()) {
+            case DELIVERED -> new NotificationOutbox.Completion(entry.id(), NotificationOutbox.Status.SENT, result.statusCode(), now);
+            case GONE -> new NotificationOutbox.Completion(entry.id(), NotificationOutbox.Status.GONE, result.statusCode(), now);
+            case REJECTED -> new NotificationOutbox.Completion(entry.id(), NotificationOutbox.Status.FAILED, result.statusCode(), now);
+            case TRANSIENT -> entry.attempts() >= maxAttempts
+                    ? new NotificationOutbox.Completion(entry.id(), NotificationOutbox.Status.FAILED, result.statusCode(), now)
+                    // Doubled for every further attempt
+                    : new NotificationOutbox.Completion(entry.id(), NotificationOutbox.Status.PENDING, result.statusCode(), now.plusSeconds(retryBackoffSeconds << (entry.attempts() - 1)));
+        };
+    }
 
-        log.info("All notifications  sent...");
+    @Scheduled(cron = "0 45 * * * *")
+    public void cleanUpOutbox() {
+        outbox.cleanUp(outboxRetention);
     }
 
-    private Subscription getSubscription(UUID uid) {
-        NotificationSubscription ns = subscriptionRepository.findById(uid).get();
-        return new Subscription(ns.getEndpoint(), new Subscription.Keys(ns.getP256dh(), ns.getAuth()));
+    private void removeGoneSubscriptions(List<PushDeliveryService.DeliveryResult> results) {
+        final var gone = results.stream().filter(result -> result.outcome() == PushDeliveryService.Outcome.GONE).map(result -> result.delivery().subscriptionId()).toList();
+        if (gone.isEmpty()) {
+            return;
+        }
+        final var deleted = subscriptionRepository.deleteWithNotifications(gone);
+        gone.forEach(pushDeliveryService::forget);
+        removedSubscriptions.addAndGet(deleted);
+        log.info("Removed " + deleted + " expired subscriptions");
     }
 
-    private double getVat(Instant timeInstant) {
-        return timeInstant.isBefore(Instant.parse("2023-05-01T03:00:00Z")) ? 1.10 : 1.24;
+    /**
+     * @param planned    the notifications waiting for their time on this instance
+     * @param latestHour the outbox deliveries of the latest hour by status
+     */
+    public record DeliveryHealth(long activeSubscriptions, long removedSubscriptions, int planned, Map<NotificationOutbox.Status, Long> latestHour, PushDeliveryService.Metrics pushMetrics) {
+
+        /**
+         * @return the share of the subscriptions in the latest hour that had expired
+         */
+        public double deadRatio() {
+            final var total = latestHour.values().stream().mapToLong(Long::longValue).sum();
+            return total == 0 ? 0 : (double) latestHour.getOrDefault(NotificationOutbox.Status.GONE, 0L) / total;
+        }
     }
 
-    void sendNotification(Subscription subscription, Message msg) {
-        log.info("sendNotification: " + subscription.endpoint);
+    public DeliveryHealth getDeliveryHealth() {
+        return new DeliveryHealth(subscriptionRepository.count(), removedSubscriptions.get(), planner.size(), outbox.getLatestHourStatus(), pushDeliveryService.getMetrics());
+    }
+
+    private String toJson(Message message) {
         try {
-            HttpResponse response = pushService.send(new Notification(subscription, mapper.writeValueAsString(msg)));
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode != 201) {
-                System.out.println("Server error, status code:" + statusCode);
-                InputStream content = response.getEntity().getContent();
-                List<String> strings = IOUtils.readLines(content, "UTF-8");
-                System.out.println(strings);
-            }
-        } catch (GeneralSecurityException | IOException | JoseException | ExecutionException
-                 | InterruptedException e) {
-            e.printStackTrace();
+            return mapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -186,6 +209,8 @@ public class NotificationService {
     public void unsubscribe(UUID uid) {
         repository.deleteAllBySubscriptionId(uid);
         subscriptionRepository.deleteById(uid);
+        pushDeliveryService.forget(uid);
+        planner.replan(uid);
     }
 
     public String getPublicKey() {
@@ -34,6 +34,7 @@ import static java.util.stream.Collectors.joining;
 public class PakastinSpotService {
 
     private static PakastinResponse pakastinResponse;
+    private static final DataCache<Instant> twoYearDataCache = new DataCache<>("Pakastin");
     private static final String url = "https://sahkotin.fi/prices?";
     public static final String pakastinFile = "pakastin.json";
     public static final String pakastin2YearFile = "pakastin-2-year.json";
@@ -106,25 +107,61 @@ public class PakastinSpotService {
         }
     }
 
-    public static void getAndWriteToFile2YearData() {
+    /**
+     * Downloads the two year price file, the spot data and the price list are loaded from it by the jobs after this one.
+     *
+     * @return false if the refresh failed, true if it succeeded or there was no new data to fetch
+     */
+    public static boolean getAndWriteToFile2YearData() {
         if (hasBeenUpdatedSuccessfullyToday()) {
             log.info("skipped Pakastin update due to having been updated successfully today already");
-            return;
+            return true;
         }
         if (!isAfter_13_45(ZonedDateTime.now(fiZoneID)) && hasBeenUpdatedSuccessfullyYesterday()) {
             log.info("skipped Pakastin update due to not having new data available yet");
-            return;
+            return true;
         }
 
+        return twoYearDataCache.refresh(PakastinSpotService::fetchAndWrite2YearData);
+    }
+
+    private static Instant fetchAndWrite2YearData() {
         final var stringHttpResponse = runQuery(createQuery(getStartOfDay(2020, 1, 1), Instant.now().plus(10, ChronoUnit.DAYS)));
+        final var newPakastinResponse = mapToResponse(stringHttpResponse.body());
+        // Keep the previous file when the response is broken, so that the last good prices are still served
+        if (newPakastinResponse == null || !newPakastinResponse.isValid() || newPakastinResponse.prices.isEmpty()) {
+            return null;
+        }
         try {
             log.info("Writing file: " + Paths.get(pakastin2YearFile).getFileName());
             Files.write(Paths.get(pakastin2YearFile), stringHttpResponse.body().getBytes());
         } catch (IOException e) {
             log.error("Error writing to file", e);
+            return null;
         }
         log.info("PakastinService has been updated " + ++updated + " times.");
-        updateSpotData();
+        return newPakastinResponse.prices.get(newPakastinResponse.prices.size() - 1).date;
+    }
+
+    /**
+     * The 2 year price file doubles as the snapshot of the Pakastin data, load it if a previous run has written it.
+     */
+    public static void restore() {
+        final var path = Paths.get(pakastin2YearFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            updateSpotData();
+            twoYearDataCache.set(PriceCalculatorService.spotDataEnd, Files.getLastModifiedTime(path).toInstant());
+            PriceStore.rebuild();
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not restore the spot price file", e);
+        }
+    }
+
+    public static DataCache<Instant> getTwoYearDataCache() {
+        return twoYearDataCache;
     }
 
 }
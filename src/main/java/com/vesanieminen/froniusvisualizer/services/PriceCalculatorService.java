@@ -7,12 +7,14 @@ import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
 import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 import com.vesanieminen.froniusvisualizer.services.model.NordpoolPrice;
+import com.vesanieminen.froniusvisualizer.util.VatSchedule;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.text.ParseException;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -31,7 +33,6 @@ import static com.vesanieminen.froniusvisualizer.util.Utils.dayFilter;
 import static com.vesanieminen.froniusvisualizer.util.Utils.divide;
 import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
 import static com.vesanieminen.froniusvisualizer.util.Utils.getCurrentTimeWithHourPrecision;
-import static com.vesanieminen.froniusvisualizer.util.Utils.getVAT;
 import static com.vesanieminen.froniusvisualizer.util.Utils.isAfter;
 import static com.vesanieminen.froniusvisualizer.util.Utils.isBefore;
 import static com.vesanieminen.froniusvisualizer.util.Utils.isBetweenHours;
@@ -44,7 +45,13 @@ import static com.vesanieminen.froniusvisualizer.util.Utils.sum;
 public class PriceCalculatorService {
 
     private static LinkedHashMap<Instant, Double> spotPriceMap;
+    // The same prices with VAT, computed once per load
+    private static LinkedHashMap<Instant, Double> spotPriceWithVatMap;
     private static List<NordpoolPrice> nordpoolPriceList;
+    // The spot data the price list was built from
+    private static LinkedHashMap<Instant, Double> priceListSource;
+    // The modification time of the Pakastin file when the spot data was loaded
+    private static FileTime spotFileModified;
     public static Instant spotDataStart;
     public static Instant spotDataEnd;
 
@@ -55,31 +62,94 @@ public class PriceCalculatorService {
         return spotPriceMap;
     }
 
+    public static LinkedHashMap<Instant, Double> getSpotDataWithVat() {
+        if (spotPriceWithVatMap == null) {
+            updateSpotData();
+        }
+        return spotPriceWithVatMap;
+    }
+
+    /**
+     * @return the spot data without loading it, null before the first load
+     */
+    public static LinkedHashMap<Instant, Double> getLoadedSpotData() {
+        return spotPriceMap;
+    }
+
     public static LinkedHashMap<Instant, Double> updateSpotData() {
-        spotPriceMap = new LinkedHashMap<>();
+        readSpotData();
+        updateNordPoolPriceList();
+        return spotPriceMap;
+    }
+
+    /**
+     * Reloads the spot data when the Pakastin file has changed since the last load, runs after the Pakastin refresh.
+     *
+     * @return false if the file could not be read
+     */
+    public static boolean refreshSpotData() {
+        try {
+            if (Files.getLastModifiedTime(Path.of(pakastin2YearFile)).equals(spotFileModified)) {
+                return true;
+            }
+        } catch (IOException e) {
+            log.error("Could not read the spot price file", e);
+            return false;
+        }
+        readSpotData();
+        PriceStore.rebuild();
+        return true;
+    }
+
+    /**
+     * Rebuilds the price list when the spot data has changed since it was built, runs after the spot data refresh.
+     */
+    public static boolean refreshPriceList() {
+        if (spotPriceWithVatMap != priceListSource) {
+            updateNordPoolPriceList();
+        }
+        return true;
+    }
+
+    private static void readSpotData() {
+        final var newSpotPriceMap = new LinkedHashMap<Instant, Double>();
         final String file;
         try {
+            spotFileModified = Files.getLastModifiedTime(Path.of(pakastin2YearFile));
             file = Files.readString(Path.of(pakastin2YearFile));
         } catch (IOException e) {
             log.error("Could not load the spot price file", e);
             throw new RuntimeException(e);
         }
         final var pakastinResponse = mapToResponse(file);
-        pakastinResponse.prices.forEach(price -> spotPriceMap.put(price.date, price.value / 10));
+        pakastinResponse.prices.forEach(price -> newSpotPriceMap.put(price.date, price.value / 10));
         spotDataStart = pakastinResponse.prices.get(0).date;
         spotDataEnd = pakastinResponse.prices.get(pakastinResponse.prices.size() - 1).date;
+        spotPriceWithVatMap = withVat(newSpotPriceMap);
+        spotPriceMap = newSpotPriceMap;
         log.info("updated spot data");
         //log.info("size of pakastin map: " + sizeOf(spotPriceMap));
-        updateNordPoolPriceList();
-        return spotPriceMap;
     }
 
     public static void updateNordPoolPriceList() {
-        if (spotPriceMap != null) {
-            nordpoolPriceList = spotPriceMap.entrySet().stream().map(item -> new NordpoolPrice(item.getValue() * getVAT(item.getKey()), item.getKey().toEpochMilli())).toList();
+        final var source = spotPriceWithVatMap;
+        if (source != null) {
+            nordpoolPriceList = source.entrySet().stream().map(item -> new NordpoolPrice(item.getValue(), item.getKey().toEpochMilli())).toList();
+            priceListSource = source;
         }
     }
 
+    private static LinkedHashMap<Instant, Double> withVat(LinkedHashMap<Instant, Double> prices) {
+        final var times = prices.keySet().stream().mapToLong(Instant::toEpochMilli).toArray();
+        final var values = VatSchedule.fi().apply(times, prices.values().stream().mapToDouble(Double::doubleValue).toArray());
+        final var result = new LinkedHashMap<Instant, Double>(prices.size() * 2);
+        var i = 0;
+        for (Instant time : prices.keySet()) {
+            result.put(time, values[i++]);
+        }
+        return result;
+    }
+
     public static FingridUsageData getFingridUsageData(String filePath) throws IOException, ParseException, CsvValidationException {
         var start = Instant.MAX;
         var end = Instant.MIN;
@@ -197,8 +267,8 @@ public class PriceCalculatorService {
     public static double calculateSpotAveragePriceThisYear() {
         //if (spotAverageThisYear == null) {
         final var year = getCurrentTimeWithHourPrecision().getYear();
-        return getSpotData().entrySet().stream().filter(yearFilter(year)).map(item -> item.getValue() * getVAT(item.getKey())).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(yearFilter(year)).count();
-        //spotAverageThisYear = getSpotData().entrySet().stream().filter(yearFilter(year)).map(item -> item.getValue() * getVAT(item.getKey())).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(yearFilter(year)).count();
+        return getSpotDataWithVat().entrySet().stream().filter(yearFilter(year)).map(Map.Entry::getValue).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(yearFilter(year)).count();
+        //spotAverageThisYear = getSpotDataWithVat().entrySet().stream().filter(yearFilter(year)).map(Map.Entry::getValue).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(yearFilter(year)).count();
         //}
         //return spotAverageThisYear;
     }
@@ -213,14 +283,14 @@ public class PriceCalculatorService {
     }
 
     public static double calculateSpotAveragePriceOnMonth(int year, int month) {
-        return getSpotData().entrySet().stream().filter(monthFilter(month, year)).map(item -> item.getValue() * getVAT(item.getKey())).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(monthFilter(month, year)).count();
+        return getSpotDataWithVat().entrySet().stream().filter(monthFilter(month, year)).map(Map.Entry::getValue).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(monthFilter(month, year)).count();
     }
 
     public static double calculateSpotAveragePriceThisMonth() {
         final var now = getCurrentTimeWithHourPrecision();
         final var month = now.getMonthValue();
         final var year = now.getYear();
-        return getSpotData().entrySet().stream().filter(monthFilter(month, year)).map(item -> item.getValue() * getVAT(item.getKey())).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(monthFilter(month, year)).count();
+        return getSpotDataWithVat().entrySet().stream().filter(monthFilter(month, year)).map(Map.Entry::getValue).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(monthFilter(month, year)).count();
     }
 
     public static double calculateSpotAveragePriceThisMonthWithoutVAT() {
@@ -235,7 +305,7 @@ public class PriceCalculatorService {
         final var day = now.getDayOfMonth();
         final var month = now.getMonthValue();
         final var year = now.getYear();
-        return getSpotData().entrySet().stream().filter(dayFilter(day, month, year)).map(item -> item.getValue() * getVAT(item.getKey())).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(dayFilter(day, month, year)).count();
+        return getSpotDataWithVat().entrySet().stream().filter(dayFilter(day, month, year)).map(Map.Entry::getValue).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(dayFilter(day, month, year)).count();
     }
 
     public static double calculateSpotAveragePriceTodayWithoutVAT() {
@@ -246,20 +316,12 @@ public class PriceCalculatorService {
         return getSpotData().entrySet().stream().filter(dayFilter(day, month, year)).map(Map.Entry::getValue).reduce(0d, Double::sum) / getSpotData().entrySet().stream().filter(dayFilter(day, month, year)).count();
     }
 
-    public static List<Double> getPricesToday() {
-        final var now = getCurrentTimeWithHourPrecision();
-        final var day = now.getDayOfMonth();
-        final var month = now.getMonthValue();
-        final var year = now.getYear();
-        return getSpotData().entrySet().stream().filter(dayFilter(day, month, year)).map(item -> item.getValue() * getVAT(item.getKey())).collect(Collectors.toList());
-    }
-
     public static List<Double> getPricesTomorrow() {
         final var now = getCurrentTimeWithHourPrecision();
         final var day = now.getDayOfMonth() + 1;
         final var month = now.getMonthValue();
         final var year = now.getYear();
-        return getSpotData().entrySet().stream().filter(dayFilter(day, month, year)).map(item -> item.getValue() * getVAT(item.getKey())).collect(Collectors.toList());
+        return getSpotDataWithVat().entrySet().stream().filter(dayFilter(day, month, year)).map(Map.Entry::getValue).collect(Collectors.toList());
     }
 
     public static List<Map.Entry<Instant, Double>> getPriceDataToday() {
@@ -267,20 +329,20 @@ public class PriceCalculatorService {
         final var day = now.getDayOfMonth();
         final var month = now.getMonthValue();
         final var year = now.getYear();
-        return getSpotData().entrySet().stream().filter(dayFilter(day, month, year)).map(item -> Map.entry(item.getKey(), item.getValue() * getVAT(item.getKey()))).collect(Collectors.toList());
+        return getSpotDataWithVat().entrySet().stream().filter(dayFilter(day, month, year)).map(item -> Map.entry(item.getKey(), item.getValue())).collect(Collectors.toList());
     }
 
     public static Set<Map.Entry<Instant, Double>> getPriceDataForMonth() {
         final var now = getCurrentTimeWithHourPrecision();
         final var month = now.getMonthValue();
         final var year = now.getYear();
-        return getSpotData().entrySet().stream().filter(monthFilter(month, year)).map(item -> Map.entry(item.getKey(), item.getValue() * getVAT(item.getKey()))).collect(Collectors.toSet());
+        return getSpotDataWithVat().entrySet().stream().filter(monthFilter(month, year)).map(item -> Map.entry(item.getKey(), item.getValue())).collect(Collectors.toSet());
     }
 
     public static List<Double> getPricesForYear() {
         final var now = getCurrentTimeWithHourPrecision();
         final var year = now.getYear();
-        return getSpotData().entrySet().stream().filter(yearFilter(year)).map(item -> item.getValue() * getVAT(item.getKey())).collect(Collectors.toList());
+        return getSpotDataWithVat().entrySet().stream().filter(yearFilter(year)).map(Map.Entry::getValue).collect(Collectors.toList());
     }
 
     public static List<NordpoolPrice> getPrices() {
@@ -291,21 +353,21 @@ public class PriceCalculatorService {
         return fingridConsumptionData.keySet().stream().filter(spotData::containsKey).map(item -> (spotData.get(item) + margin) * fingridConsumptionData.get(item)).reduce(0d, Double::sum) / 100;
     }
 
-    public static SpotCalculation calculateSpotElectricityPriceDetails(LinkedHashMap<Instant, Double> fingridConsumptionData, double margin, double vat) {
-        final var spotData = getSpotData();
+    public static SpotCalculation calculateSpotElectricityPriceDetails(LinkedHashMap<Instant, Double> fingridConsumptionData, double margin, boolean vat) {
+        final var spotData = vat ? getSpotDataWithVat() : getSpotData();
         final var spotCalculation = fingridConsumptionData.keySet().stream().filter(spotData::containsKey)
                 .map(item -> new SpotCalculation(
-                        spotData.get(item) * getVAT(item, vat) + margin,
-                        spotData.get(item) * getVAT(item, vat),
-                        (spotData.get(item) * getVAT(item, vat) + margin) * fingridConsumptionData.get(item),
-                        spotData.get(item) * getVAT(item, vat) * fingridConsumptionData.get(item),
+                        spotData.get(item) + margin,
+                        spotData.get(item),
+                        (spotData.get(item) + margin) * fingridConsumptionData.get(item),
+                        spotData.get(item) * fingridConsumptionData.get(item),
                         fingridConsumptionData.get(item),
                         item,
                         item,
                         new HourValue(item.atZone(fiZoneID).getHour(), fingridConsumptionData.get(item)),
-                        new HourValue(item.atZone(fiZoneID).getHour(), (spotData.get(item) * getVAT(item, vat) + margin) * fingridConsumptionData.get(item) / 100),
-                        new HourValue(item.atZone(fiZoneID).getHour(), (spotData.get(item) * getVAT(item, vat)) * fingridConsumptionData.get(item) / 100),
-                        new HourValue(item.atZone(fiZoneID).getHour(), spotData.get(item) * getVAT(item, vat))
+                        new HourValue(item.atZone(fiZoneID).getHour(), (spotData.get(item) + margin) * fingridConsumptionData.get(item) / 100),
+                        new HourValue(item.atZone(fiZoneID).getHour(), (spotData.get(item)) * fingridConsumptionData.get(item) / 100),
+                        new HourValue(item.atZone(fiZoneID).getHour(), spotData.get(item))
                 ))
                 .reduce(new SpotCalculation(
                         0,
@@ -341,7 +403,7 @@ public class PriceCalculatorService {
         return spotCalculation;
     }
 
-    public static SpotCalculation calculateSpotElectricityPriceDetails(LinkedHashMap<Instant, Double> fingridConsumptionData, double margin, double vat, Instant start, Instant end) throws IOException {
+    public static SpotCalculation calculateSpotElectricityPriceDetails(LinkedHashMap<Instant, Double> fingridConsumptionData, double margin, boolean vat, Instant start, Instant end) throws IOException {
         final LinkedHashMap<Instant, Double> filtered = getDateTimeRange(fingridConsumptionData, start, end);
         return calculateSpotElectricityPriceDetails(filtered, margin, vat);
     }
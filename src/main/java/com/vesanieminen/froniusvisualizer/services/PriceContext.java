@@ -0,0 +1,229 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.NotificationRuleType;
+import com.vesanieminen.froniusvisualizer.services.model.PriceNotification;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+
+/**
+ * The Finnish prices with VAT of one price publication and the figures the notification rules are evaluated against:
+ * the day and month averages and the rank of every hour within its day. It is created once per publication and shared
+ * by all subscriptions, and the firings of a rule type with the same parameters are computed only once.
+ */
+public class PriceContext {
+
+    private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm").withZone(fiZoneID);
+
+    public record Firing(Instant time, String title, String text) {
+
+        /**
+         * @return the firing as a warning the given minutes before it, telling when the price starts instead of now
+         */
+        public Firing ahead(int minutes) {
+            return new Firing(time.minus(minutes, ChronoUnit.MINUTES), title + " (in %d min)".formatted(minutes),
+                    text.replaceFirst("^Price now", "Price from " + timeFormatter.format(time)));
+        }
+    }
+
+    /**
+     * The parameters that the firings depend on, the ones that a rule type does not use are left out.
+     */
+    private record Key(NotificationRuleType type, boolean up, double price, double param) {
+    }
+
+    private final long version;
+    private final long from;
+    private final long[] times;
+    private final double[] values;
+    private final double[] dayAverages;
+    private final int[] dayRanks;
+    private final double[] monthAverages;
+    private final Map<Key, List<Firing>> firings = new ConcurrentHashMap<>();
+
+    /**
+     * @param from the time of the first firing
+     */
+    public static PriceContext create(Instant from) {
+        return create(PriceStore.get(), from);
+    }
+
+    /**
+     * @param from the time of the first firing
+     */
+    public static PriceContext create(PriceStore.Prices prices, Instant from) {
+        // The whole month is needed for its average, the hour before the first firing for the direction
+        final var monthStart = from.atZone(fiZoneID).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).toInstant();
+        final var previousHour = from.truncatedTo(ChronoUnit.HOURS).minus(1, ChronoUnit.HOURS);
+        final var start = previousHour.isBefore(monthStart) ? previousHour : monthStart;
+        final var series = prices.series(BiddingZone.FI, start, Instant.ofEpochMilli(prices.timeAt(prices.length())), true);
+        return new PriceContext(prices.version(), from, series);
+    }
+
+    private PriceContext(long version, Instant from, TimeSeries series) {
+        this.version = version;
+        this.from = from.toEpochMilli();
+        this.times = series.times();
+        this.values = series.values();
+        final var days = new long[times.length];
+        final var months = new long[times.length];
+        for (int i = 0; i < times.length; ++i) {
+            final var date = Instant.ofEpochMilli(times[i]).atZone(fiZoneID).toLocalDate();
+            days[i] = date.toEpochDay();
+            months[i] = date.getYear() * 12L + date.getMonthValue();
+        }
+        dayAverages = averages(days);
+        monthAverages = averages(months);
+        dayRanks = ranks(days);
+    }
+
+    /**
+     * @return the version of the prices the context was created from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Firing> getFirings(PriceNotification rule) {
+        final var type = rule.getRuleType() == null ? NotificationRuleType.THRESHOLD : rule.getRuleType();
+        final var key = type == NotificationRuleType.THRESHOLD
+                ? new Key(type, rule.isUp(), rule.getPrice(), Double.NaN)
+                : new Key(type, false, Double.NaN, type.getParam(rule.getParam()));
+        return firings.computeIfAbsent(key, this::evaluate);
+    }
+
+    private List<Firing> evaluate(Key key) {
+        return switch (key.type()) {
+            case THRESHOLD -> crossings(key.up(), key.price());
+            case BELOW_DAY_AVERAGE -> runs(i -> values[i] < dayAverages[i], (start, end) -> new Firing(time(start), "Below the day's average",
+                    "Price now %.2f c/kWh, the day's average is %.2f c/kWh. Until %s.".formatted(values[start], dayAverages[start], timeFormatter.format(end))));
+            case CHEAPEST_HOURS -> runs(i -> dayRanks[i] < key.param(), (start, end) -> new Firing(time(start), "Cheapest hours",
+                    "Price now %.2f c/kWh, one of the %d cheapest hours of the day. Until %s.".formatted(values[start], (int) key.param(), timeFormatter.format(end))));
+            case SPIKE -> runs(i -> values[i] > key.param() * monthAverages[i] && monthAverages[i] > 0, (start, end) -> new Firing(time(start), "Price spike!",
+                    "Price now %.2f c/kWh, %.1f times the month's average. Until %s.".formatted(values[start], values[start] / monthAverages[start], timeFormatter.format(end))));
+            case NEGATIVE_PRICE -> runs(i -> values[i] < 0, (start, end) -> new Firing(time(start), "Negative price!",
+                    "Price now %.2f c/kWh. Until %s.".formatted(values[start], timeFormatter.format(end))));
+        };
+    }
+
+    /**
+     * The hours whose price has crossed the given price from the previous hour in the given direction. An unchanged
+     * price counts as going down.
+     */
+    private List<Firing> crossings(boolean up, double price) {
+        final var result = new ArrayList<Firing>();
+        for (int i = firstIndex(); i < times.length; ++i) {
+            if (i == 0 || !isNextHour(i)) {
+                continue;
+            }
+            final var hourUp = values[i] > values[i - 1];
+            final var lowerBound = hourUp ? values[i - 1] : values[i];
+            final var upperBound = hourUp ? values[i] : values[i - 1];
+            if (hourUp == up && price >= lowerBound && price <= upperBound) {
+                result.add(new Firing(time(i), up ? "Prices going up!" : "Prices going down!", createCrossingText(i, up)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the price of the hour and the next peak or low that follows it
+     */
+    private String createCrossingText(int index, boolean up) {
+        int nextPeakLow = index;
+        for (int i = index + 1; i < times.length; ++i) {
+            if (up ? values[i] > values[index] : values[i] < values[index]) {
+                nextPeakLow = i;
+            } else {
+                break;
+            }
+        }
+        var text = "Price now %.2f c/kWh.".formatted(values[index]);
+        if (nextPeakLow != index) {
+            text += (" Next " + (up ? "peak" : "low") + ": %.2f c/kWh at %s.").formatted(values[nextPeakLow], timeFormatter.format(time(nextPeakLow)));
+        }
+        return text;
+    }
+
+    private interface RunFiring {
+        Firing create(int start, Instant end);
+    }
+
+    /**
+     * A firing at the start of every run of consecutive hours that match the condition.
+     */
+    private List<Firing> runs(IntPredicate condition, RunFiring firing) {
+        final var result = new ArrayList<Firing>();
+        for (int i = firstIndex(); i < times.length; ++i) {
+            if (!condition.test(i) || i > 0 && isNextHour(i) && condition.test(i - 1)) {
+                continue;
+            }
+            var end = i + 1;
+            while (end < times.length && isNextHour(end) && condition.test(end)) {
+                ++end;
+            }
+            result.add(firing.create(i, time(end - 1).plus(1, ChronoUnit.HOURS)));
+        }
+        return result;
+    }
+
+    private int firstIndex() {
+        final var index = Arrays.binarySearch(times, from);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private boolean isNextHour(int index) {
+        return times[index] - times[index - 1] == PriceStore.hourMillis;
+    }
+
+    private Instant time(int index) {
+        return Instant.ofEpochMilli(times[index]);
+    }
+
+    /**
+     * @return the average of the group of every hour, the groups are consecutive
+     */
+    private double[] averages(long[] groups) {
+        final var averages = new double[groups.length];
+        for (int start = 0, end; start < groups.length; start = end) {
+            var sum = 0d;
+            for (end = start; end < groups.length && groups[end] == groups[start]; ++end) {
+                sum += values[end];
+            }
+            Arrays.fill(averages, start, end, sum / (end - start));
+        }
+        return averages;
+    }
+
+    /**
+     * @return the rank of every hour by its price within its group, 0 is the cheapest
+     */
+    private int[] ranks(long[] groups) {
+        final var ranks = new int[groups.length];
+        for (int start = 0, end; start < groups.length; start = end) {
+            end = start;
+            while (end < groups.length && groups[end] == groups[start]) {
+                ++end;
+            }
+            final var order = IntStream.range(start, end).boxed().sorted(Comparator.comparingDouble(i -> values[i])).toList();
+            for (int rank = 0; rank < order.size(); ++rank) {
+                ranks[order.get(rank)] = rank;
+            }
+        }
+        return ranks;
+    }
+
+}
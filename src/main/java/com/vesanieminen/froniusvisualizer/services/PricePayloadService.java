@@ -0,0 +1,187 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.vesanieminen.froniusvisualizer.services.SeriesEncoder.Payload;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized price API responses. The common windows are serialized and gzipped once per {@link PriceStore} version
+ * and then served as is, other ranges are serialized per request. The cached payloads are dropped when a
+ * {@link DataEvents.Source#PRICES} event arrives. The version is part of the cache key, so a payload built from the
+ * previous version by a request that was still running at the update is never served for the new one.
+ */
+@Slf4j
+public class PricePayloadService {
+
+    public static final Duration maxRange = Duration.ofDays(800);
+    // Prices are stored with a 0.01 c/kWh precision in the columnar format, -327.67 - 327.67 c/kWh fits int16
+    private static final double columnarScale = 100;
+    private static final int maxCachedPayloads = 1000;
+    private static final DateTimeFormatter legacyFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final Map<Key, Payload> payloads = new ConcurrentHashMap<>();
+    private static volatile long payloadVersion = -1;
+
+    static {
+        DataEvents.subscribe(DataEvents.Source.PRICES, event -> clear(event.version()));
+    }
+
+    public enum Window {
+        TODAY, TOMORROW, WEEK, MONTH, ALL;
+
+        /**
+         * @return [start, end) of the window in the zone's calendar, the week is the last 7 days including today and
+         * all is the whole history of the store
+         */
+        public Instant[] getRange(BiddingZone zone) {
+            final var today = ZonedDateTime.now(zone.zoneId).truncatedTo(ChronoUnit.DAYS);
+            return switch (this) {
+                case ALL -> {
+                    final var prices = PriceStore.get();
+                    yield new Instant[]{Instant.ofEpochMilli(prices.startMillis()), Instant.ofEpochMilli(prices.timeAt(prices.length()))};
+                }
+                case TODAY -> new Instant[]{today.toInstant(), today.plusDays(1).toInstant()};
+                case TOMORROW -> new Instant[]{today.plusDays(1).toInstant(), today.plusDays(2).toInstant()};
+                case WEEK -> new Instant[]{today.minusDays(6).toInstant(), today.plusDays(1).toInstant()};
+                case MONTH -> new Instant[]{today.withDayOfMonth(1).toInstant(), today.withDayOfMonth(1).plusMonths(1).toInstant()};
+            };
+        }
+    }
+
+    public enum Resolution {
+        HOUR(Duration.ofHours(1)),
+        // The days of the DST changes are 23 and 25 hours, a series over those is encoded with explicit offsets
+        DAY(Duration.ofDays(1));
+
+        /**
+         * The step of the columnar encoding in milliseconds.
+         */
+        public final long stepMillis;
+
+        Resolution(Duration step) {
+            this.stepMillis = step.toMillis();
+        }
+    }
+
+    public enum Format {
+        JSON("application/json"),
+        // The /api/todaysPrices.json shape
+        LEGACY_JSON("application/json"),
+        // [[epoch millis, price], ...] for Highcharts
+        POINTS("application/json"),
+        COLUMNAR(SeriesEncoder.columnarMediaType),
+        CSV(SeriesEncoder.csvMediaType);
+
+        public final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+    }
+
+    private record Key(long version, BiddingZone zone, Instant start, Instant end, Resolution resolution, boolean vat, Format format) {
+    }
+
+    /**
+     * Returns the cached payload of a common window, building it on the first request after a data update.
+     */
+    public static Payload get(BiddingZone zone, Window window, Resolution resolution, boolean vat, Format format) {
+        final var range = window.getRange(zone);
+        final var prices = PriceStore.get();
+        // Also covers a request that reads the store before the event of the new version has arrived
+        if (prices.version() > payloadVersion || payloads.size() > maxCachedPayloads) {
+            clear(prices.version());
+        }
+        return payloads.computeIfAbsent(new Key(prices.version(), zone, range[0], range[1], resolution, vat, format), key -> create(prices, key));
+    }
+
+    private static synchronized void clear(long version) {
+        payloads.clear();
+        payloadVersion = Math.max(payloadVersion, version);
+    }
+
+    /**
+     * Serializes an arbitrary range without caching it.
+     */
+    public static Payload get(BiddingZone zone, Instant start, Instant end, Resolution resolution, boolean vat, Format format) {
+        if (!start.isBefore(end) || Duration.between(start, end).compareTo(maxRange) > 0) {
+            throw new IllegalArgumentException("The range must be between 1 ms and " + maxRange.toDays() + " days");
+        }
+        final var prices = PriceStore.get();
+        return create(prices, new Key(prices.version(), zone, start, end, resolution, vat, format));
+    }
+
+    private static Payload create(PriceStore.Prices prices, Key key) {
+        final var series = key.resolution() == Resolution.DAY
+                ? prices.dailyAverages(key.zone(), key.start(), key.end(), key.vat())
+                : prices.series(key.zone(), key.start(), key.end(), key.vat());
+        final var body = switch (key.format()) {
+            case JSON -> SeriesEncoder.toJson(series, "prices", "price", "zone", key.zone().name(), "resolution", key.resolution().name().toLowerCase(), "vat", key.vat(), "unit", "c/kWh");
+            case LEGACY_JSON -> writeLegacyJson(series);
+            case POINTS -> writePoints(key, series);
+            case COLUMNAR -> SeriesEncoder.toColumnar(series, key.resolution().stepMillis, columnarScale);
+            case CSV -> SeriesEncoder.toCsv(series, "price");
+        };
+        // Past prices do not change anymore, the cache lifetime of those can be long
+        final var isFinal = key.end().isBefore(Instant.now().minus(Duration.ofDays(2)));
+        return Payload.of(body, key.format().contentType, isFinal);
+    }
+
+    private static byte[] writePoints(Key key, TimeSeries series) {
+        final var outputStream = new ByteArrayOutputStream(64 + series.size() * 24);
+        try (var generator = jsonFactory.createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeStringField("resolution", key.resolution().name().toLowerCase());
+            generator.writeArrayFieldStart("points");
+            for (int i = 0; i < series.size(); ++i) {
+                generator.writeStartArray();
+                generator.writeNumber(series.times()[i]);
+                // The history chart shows two decimals, the rest would only add to the payload
+                generator.writeNumber(Math.round(series.values()[i] * 100) / 100.0);
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] writeLegacyJson(TimeSeries series) {
+        final var outputStream = new ByteArrayOutputStream(16 + series.size() * 96);
+        try (var generator = jsonFactory.createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("prices");
+            for (int i = 0; i < series.size(); ++i) {
+                final var start = Instant.ofEpochMilli(series.times()[i]);
+                generator.writeStartObject();
+                generator.writeNumberField("price", series.values()[i]);
+                generator.writeStringField("startDate", legacyFormatter.format(start));
+                generator.writeStringField("endDate", legacyFormatter.format(start.plus(1, ChronoUnit.HOURS)));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+}
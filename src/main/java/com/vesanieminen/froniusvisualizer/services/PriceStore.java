@@ -0,0 +1,276 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spot prices of every {@link BiddingZone} in c/kWh without VAT, as one double column per zone on a shared hourly time
+ * axis. A column only covers the range of its zone, which starts at its offset on the axis, as the other zones have a
+ * much shorter history than Finland. Missing hours are NaN. Sub-hour prices are averaged into their hour.
+ * <p>
+ * The store is rebuilt as a whole whenever one of the sources gets new data and the previous {@link Prices} stay
+ * valid for the readers that still hold them. A rebuild that changes prices publishes a {@link DataEvents.Source#PRICES}
+ * event with the changed hours.
+ */
+@Slf4j
+public class PriceStore {
+
+    public static final long hourMillis = 3_600_000L;
+
+    private static volatile Prices prices = new Prices(0, 0, 0, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    public static Prices get() {
+        return prices;
+    }
+
+    public static synchronized void rebuild() {
+        final var startTime = System.currentTimeMillis();
+        final var sources = new EnumMap<BiddingZone, Map<Long, Double>>(BiddingZone.class);
+        sources.put(BiddingZone.FI, getFinnishPrices());
+        for (BiddingZone zone : BiddingZone.values()) {
+            final var zonePrices = ZonePriceService.getPrices(zone);
+            if (zone == BiddingZone.FI || zonePrices == null) {
+                continue;
+            }
+            final var map = new HashMap<Long, Double>();
+            // spot-hinta.fi prices are in EUR/kWh
+            zonePrices.forEach(price -> map.put(price.DateTime.toInstant().toEpochMilli(), price.PriceNoTax * 100));
+            sources.put(zone, map);
+        }
+
+        final var firstTimes = new EnumMap<BiddingZone, Long>(BiddingZone.class);
+        final var lastTimes = new EnumMap<BiddingZone, Long>(BiddingZone.class);
+        sources.forEach((zone, source) -> {
+            if (!source.isEmpty()) {
+                firstTimes.put(zone, Collections.min(source.keySet()));
+                lastTimes.put(zone, Collections.max(source.keySet()));
+            }
+        });
+        if (firstTimes.isEmpty()) {
+            return;
+        }
+        final var start = Math.floorDiv(Collections.min(firstTimes.values()), hourMillis) * hourMillis;
+        final var length = (int) ((Collections.max(lastTimes.values()) - start) / hourMillis) + 1;
+        final var columns = new EnumMap<BiddingZone, double[]>(BiddingZone.class);
+        final var offsets = new EnumMap<BiddingZone, Integer>(BiddingZone.class);
+        firstTimes.forEach((zone, first) -> {
+            final var offset = (int) ((first - start) / hourMillis);
+            final var zoneLength = (int) ((lastTimes.get(zone) - start) / hourMillis) + 1 - offset;
+            final var sums = new double[zoneLength];
+            final var counts = new int[zoneLength];
+            sources.get(zone).forEach((time, price) -> {
+                final var index = (int) ((time - start) / hourMillis) - offset;
+                sums[index] += price;
+                ++counts[index];
+            });
+            final var column = new double[zoneLength];
+            for (int i = 0; i < zoneLength; ++i) {
+                column[i] = counts[i] == 0 ? Double.NaN : sums[i] / counts[i];
+            }
+            columns.put(zone, column);
+            offsets.put(zone, offset);
+        });
+        final var previous = prices;
+        // The prices with VAT are computed once here instead of per hour in every read
+        final var vatColumns = new EnumMap<BiddingZone, double[]>(BiddingZone.class);
+        columns.forEach((zone, column) -> vatColumns.put(zone, zone.getVatSchedule().apply(start + offsets.get(zone) * hourMillis, hourMillis, column)));
+        final var next = new Prices(previous.version() + 1, start, length, Collections.unmodifiableMap(columns), Collections.unmodifiableMap(vatColumns),
+                Collections.unmodifiableMap(offsets));
+        final var changed = getChangedRange(previous, next);
+        if (changed == null) {
+            log.info("price store unchanged after {} ms", System.currentTimeMillis() - startTime);
+            return;
+        }
+        prices = next;
+        log.info("rebuilt price store with {} zones and {} hours in {} ms", columns.size(), length, System.currentTimeMillis() - startTime);
+        DataEvents.publish(new DataEvents.DataUpdated(DataEvents.Source.PRICES, next.version(), changed[0], changed[1]));
+    }
+
+    /**
+     * @return [start, end) of the hours whose price changed in any zone, null if nothing changed
+     */
+    private static Instant[] getChangedRange(Prices previous, Prices next) {
+        if (previous.length() == 0) {
+            return new Instant[]{Instant.ofEpochMilli(next.startMillis()), Instant.ofEpochMilli(next.timeAt(next.length()))};
+        }
+        final var from = Math.min(previous.startMillis(), next.startMillis());
+        final var to = Math.max(previous.timeAt(previous.length()), next.timeAt(next.length()));
+        var firstChange = Long.MAX_VALUE;
+        var lastChange = Long.MIN_VALUE;
+        for (BiddingZone zone : BiddingZone.values()) {
+            for (long time = from; time < to; time += hourMillis) {
+                if (Double.compare(previous.get(zone, time), next.get(zone, time)) != 0) {
+                    firstChange = Math.min(firstChange, time);
+                    lastChange = Math.max(lastChange, time);
+                }
+            }
+        }
+        return firstChange > lastChange ? null : new Instant[]{Instant.ofEpochMilli(firstChange), Instant.ofEpochMilli(lastChange + hourMillis)};
+    }
+
+    private static Map<Long, Double> getFinnishPrices() {
+        final var result = new HashMap<Long, Double>();
+        final var history = PriceCalculatorService.getLoadedSpotData();
+        if (history != null) {
+            history.forEach((time, price) -> result.put(time.toEpochMilli(), price));
+        }
+        // Nordpool has tomorrow's prices before Pakastin does
+        final var latest = NordpoolSpotService.getLatest7DaysMap();
+        if (latest != null) {
+            latest.forEach((time, price) -> result.put(time.toEpochMilli(), price));
+        }
+        return result;
+    }
+
+    /**
+     * An immutable version of the store. The columns must not be modified.
+     *
+     * @param length     the length of the time axis, the columns may be shorter
+     * @param vatColumns the columns with the VAT of each hour applied
+     * @param offsets    the index on the time axis where the column of a zone starts
+     */
+    public record Prices(long version, long startMillis, int length, Map<BiddingZone, double[]> columns, Map<BiddingZone, double[]> vatColumns,
+                         Map<BiddingZone, Integer> offsets) {
+
+        /**
+         * Prices whose columns all start at the start of the time axis.
+         */
+        public Prices(long version, long startMillis, int length, Map<BiddingZone, double[]> columns, Map<BiddingZone, double[]> vatColumns) {
+            this(version, startMillis, length, columns, vatColumns, Collections.emptyMap());
+        }
+
+        public boolean hasZone(BiddingZone zone) {
+            return columns.containsKey(zone);
+        }
+
+        public int indexOf(Instant instant) {
+            return (int) Math.floorDiv(instant.toEpochMilli() - startMillis, hourMillis);
+        }
+
+        public long timeAt(int index) {
+            return startMillis + index * hourMillis;
+        }
+
+        /**
+         * @return the price in c/kWh without VAT or NaN when there is no price for the hour
+         */
+        public double get(BiddingZone zone, Instant instant) {
+            return get(zone, instant.toEpochMilli());
+        }
+
+        /**
+         * @return the price in c/kWh with or without VAT or NaN when there is no price for the hour
+         */
+        public double get(BiddingZone zone, Instant instant, boolean vat) {
+            return get(vat ? vatColumns : columns, zone, instant.toEpochMilli());
+        }
+
+        public double get(BiddingZone zone, long timeMillis) {
+            return get(columns, zone, timeMillis);
+        }
+
+        private double get(Map<BiddingZone, double[]> source, BiddingZone zone, long timeMillis) {
+            final var column = source.get(zone);
+            final var index = Math.floorDiv(timeMillis - startMillis, hourMillis) - offsetOf(zone);
+            return column == null || index < 0 || index >= column.length ? Double.NaN : column[(int) index];
+        }
+
+        private int offsetOf(BiddingZone zone) {
+            return offsets.getOrDefault(zone, 0);
+        }
+
+        /**
+         * The hours that have a price in [start, end), with VAT applied when requested.
+         */
+        public TimeSeries series(BiddingZone zone, Instant start, Instant end, boolean vat) {
+            final var column = (vat ? vatColumns : columns).get(zone);
+            if (column == null) {
+                return TimeSeries.empty();
+            }
+            final var offset = offsetOf(zone);
+            final var from = Math.max(offset, indexOf(start));
+            final var to = Math.min(offset + column.length, indexOf(end.minusMillis(1)) + 1);
+            if (from >= to) {
+                return TimeSeries.empty();
+            }
+            final var times = new long[to - from];
+            final var values = new double[to - from];
+            var size = 0;
+            for (int i = from; i < to; ++i) {
+                final var value = column[i - offset];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                times[size] = timeAt(i);
+                values[size] = value;
+                ++size;
+            }
+            return new TimeSeries(Arrays.copyOf(times, size), Arrays.copyOf(values, size));
+        }
+
+        /**
+         * Daily averages of the hours that have a price in [start, end). The days are calendar days in the zone's
+         * timezone and the times are the starts of the days.
+         */
+        public TimeSeries dailyAverages(BiddingZone zone, Instant start, Instant end, boolean vat) {
+            final var hourly = series(zone, start, end, vat);
+            final var times = new long[hourly.size()];
+            final var values = new double[hourly.size()];
+            var size = 0;
+            var day = Long.MIN_VALUE;
+            var sum = 0d;
+            var count = 0;
+            for (int i = 0; i < hourly.size(); ++i) {
+                final var hourDay = Instant.ofEpochMilli(hourly.times()[i]).atZone(zone.zoneId).truncatedTo(ChronoUnit.DAYS).toInstant().toEpochMilli();
+                if (hourDay != day && count > 0) {
+                    times[size] = day;
+                    values[size++] = sum / count;
+                    sum = 0;
+                    count = 0;
+                }
+                day = hourDay;
+                sum += hourly.values()[i];
+                ++count;
+            }
+            if (count > 0) {
+                times[size] = day;
+                values[size++] = sum / count;
+            }
+            return new TimeSeries(Arrays.copyOf(times, size), Arrays.copyOf(values, size));
+        }
+
+        /**
+         * @return the average price in [start, end) or NaN when there are no prices
+         */
+        public double average(BiddingZone zone, Instant start, Instant end, boolean vat) {
+            final var values = series(zone, start, end, vat).values();
+            return values.length == 0 ? Double.NaN : Arrays.stream(values).average().orElse(Double.NaN);
+        }
+
+        /**
+         * @return the start of the last hour that has a price, null if the zone has no prices
+         */
+        public Instant getLastTime(BiddingZone zone) {
+            final var column = columns.get(zone);
+            if (column == null) {
+                return null;
+            }
+            for (int i = column.length - 1; i >= 0; --i) {
+                if (!Double.isNaN(column[i])) {
+                    return Instant.ofEpochMilli(timeAt(offsetOf(zone) + i));
+                }
+            }
+            return null;
+        }
+    }
+
+}
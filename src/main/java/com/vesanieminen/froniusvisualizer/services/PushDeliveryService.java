@@ -0,0 +1,307 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.martijndwars.webpush.Notification;
+import nl.martijndwars.webpush.PushService;
+import nl.martijndwars.webpush.Subscription;
+import nl.martijndwars.webpush.Utils;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.jose4j.lang.JoseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends web push messages concurrently. The pushes of a batch are run on a fixed pool, each push service host has a
+ * limit of concurrent requests so that a large batch does not get throttled, and every request has a timeout so that
+ * one slow host cannot hold the batch.
+ * <p>
+ * The library's send creates an async client per push, so the pool threads only wait for the responses.
+ */
+@Service
+@Slf4j
+public class PushDeliveryService {
+
+    // Status of the pushes that got no response
+    public static final int statusTimeout = -1;
+    public static final int statusError = 0;
+    // The keys of the subscription could not be decoded, sending it again does not help
+    public static final int statusInvalidKeys = -2;
+    private static final int maxErrorBodyLength = 200;
+
+    @Value("${vapid.public.key}")
+    private String publicKey;
+    @Value("${vapid.private.key}")
+    private String privateKey;
+    @Value("${vapid.subject}")
+    private String subject;
+    @Value("${push.threads:32}")
+    private int threads;
+    @Value("${push.host.concurrency:16}")
+    private int hostConcurrency;
+    @Value("${push.timeout.millis:5000}")
+    private long timeoutMillis;
+
+    private PushService pushService;
+    private ExecutorService executor;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder totalLatencyMillis = new LongAdder();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+    private final Map<UUID, PushKeys> keys = new ConcurrentHashMap<>();
+
+    public record Delivery(UUID subscriptionId, Subscription subscription, String payload) {
+    }
+
+    /**
+     * The decoded P-256 key and auth secret of a subscription, so that they are not decoded for every push.
+     */
+    private record PushKeys(PublicKey publicKey, byte[] auth) {
+    }
+
+    public enum Outcome {
+        DELIVERED,
+        /**
+         * The subscription has expired or was removed by the user, it should be deleted
+         */
+        GONE,
+        /**
+         * Throttled, failed on the push service or no response, worth retrying
+         */
+        TRANSIENT,
+        /**
+         * The push service rejected the request itself or the subscription keys are invalid, retrying does not help
+         */
+        REJECTED;
+
+        public static Outcome of(int statusCode) {
+            if (statusCode >= 200 && statusCode < 300) {
+                return DELIVERED;
+            }
+            if (statusCode == 404 || statusCode == 410) {
+                return GONE;
+            }
+            if (statusCode == statusTimeout || statusCode == statusError || statusCode == 429 || statusCode >= 500) {
+                return TRANSIENT;
+            }
+            return REJECTED;
+        }
+    }
+
+    /**
+     * @param statusCode the HTTP status of the push service, {@link #statusTimeout}, {@link #statusError} or
+     *                   {@link #statusInvalidKeys}
+     */
+    public record DeliveryResult(Delivery delivery, int statusCode, long latencyMillis) {
+
+        public Outcome outcome() {
+            return Outcome.of(statusCode);
+        }
+
+        public boolean isSuccess() {
+            return outcome() == Outcome.DELIVERED;
+        }
+    }
+
+    /**
+     * @param statusCodes the number of sends per status since the start
+     * @param outcomes    the same grouped by the outcome
+     */
+    public record Metrics(long deliveries, Map<Integer, Long> statusCodes, Map<Outcome, Long> outcomes, double averageLatencyMillis, long maxLatencyMillis) {
+    }
+
+    @PostConstruct
+    private void init() throws GeneralSecurityException {
+        Security.addProvider(new BouncyCastleProvider());
+        pushService = new PushService(publicKey, privateKey, subject);
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final var thread = new Thread(runnable, "push-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sends the pushes and waits until all of them have a result. The retries of the transient failures are up to the
+     * caller.
+     *
+     * @return the results in the order of the batch
+     */
+    public List<DeliveryResult> deliver(List<Delivery> batch) {
+        final var startTime = System.currentTimeMillis();
+        // A failed send is a result too, so that every delivery of the batch gets one
+        final var futures = batch.stream().map(delivery -> CompletableFuture.supplyAsync(() -> send(delivery), executor)
+                .exceptionally(e -> {
+                    log.warn("Push to {} failed", getHost(delivery.subscription()), e);
+                    return new DeliveryResult(delivery, statusError, 0);
+                })).toList();
+        final var results = new ArrayList<DeliveryResult>(futures.size());
+        for (CompletableFuture<DeliveryResult> future : futures) {
+            results.add(future.join());
+        }
+        logBatch(results, System.currentTimeMillis() - startTime);
+        return results;
+    }
+
+    /**
+     * Drops the cached keys of a subscription that was removed.
+     */
+    public void forget(UUID subscriptionId) {
+        keys.remove(subscriptionId);
+    }
+
+    public Metrics getMetrics() {
+        final var count = deliveries.sum();
+        final var statusCodes = new TreeMap<Integer, Long>();
+        final var outcomes = new EnumMap<Outcome, Long>(Outcome.class);
+        statusCounts.forEach((status, adder) -> {
+            statusCodes.put(status, adder.sum());
+            outcomes.merge(Outcome.of(status), adder.sum(), Long::sum);
+        });
+        return new Metrics(count, statusCodes, outcomes, count == 0 ? 0 : (double) totalLatencyMillis.sum() / count, maxLatencyMillis.get());
+    }
+
+    private DeliveryResult send(Delivery delivery) {
+        final var startNanos = System.nanoTime();
+        final var permits = hostPermits.computeIfAbsent(getHost(delivery.subscription()), host -> new Semaphore(hostConcurrency));
+        var statusCode = statusError;
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                statusCode = statusTimeout;
+            } else {
+                try {
+                    statusCode = post(delivery);
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Push to {} failed", getHost(delivery.subscription()), e);
+        }
+        final var latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        record(statusCode, latencyMillis);
+        return new DeliveryResult(delivery, statusCode, latencyMillis);
+    }
+
+    private int post(Delivery delivery) throws InterruptedException {
+        final PushKeys pushKeys;
+        try {
+            pushKeys = getKeys(delivery);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            // Malformed or missing keys
+            log.info("Push to {} has invalid keys: {}", getHost(delivery.subscription()), e.toString());
+            return statusInvalidKeys;
+        }
+        Future<HttpResponse> future = null;
+        try {
+            final var notification = new Notification(delivery.subscription().endpoint, pushKeys.publicKey(), pushKeys.auth(), delivery.payload().getBytes(StandardCharsets.UTF_8));
+            future = pushService.sendAsync(notification);
+            final var response = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            final var statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode < 200 || statusCode >= 300) {
+                log.info("Push to {} failed with {}: {}", getHost(delivery.subscription()), statusCode, readBody(response));
+            }
+            return statusCode;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return statusTimeout;
+        } catch (ExecutionException | GeneralSecurityException | IOException | JoseException | RuntimeException e) {
+            log.info("Push to {} failed: {}", getHost(delivery.subscription()), e.toString());
+            return statusError;
+        }
+    }
+
+    private PushKeys getKeys(Delivery delivery) throws GeneralSecurityException {
+        final var cached = keys.get(delivery.subscriptionId());
+        if (cached != null) {
+            return cached;
+        }
+        final var subscriptionKeys = delivery.subscription().keys;
+        final var decoded = new PushKeys(Utils.loadPublicKey(subscriptionKeys.p256dh), decodeBase64Url(subscriptionKeys.auth));
+        keys.put(delivery.subscriptionId(), decoded);
+        return decoded;
+    }
+
+    /**
+     * The browsers give the keys in base64url, the padding and the standard alphabet are accepted too.
+     */
+    private static byte[] decodeBase64Url(String value) {
+        return Base64.getUrlDecoder().decode(value.replace('+', '-').replace('/', '_').replace("=", ""));
+    }
+
+    private void record(int statusCode, long latencyMillis) {
+        statusCounts.computeIfAbsent(statusCode, ignored -> new LongAdder()).increment();
+        deliveries.increment();
+        totalLatencyMillis.add(latencyMillis);
+        maxLatencyMillis.accumulateAndGet(latencyMillis, Math::max);
+    }
+
+    private static void logBatch(List<DeliveryResult> results, long durationMillis) {
+        if (results.isEmpty()) {
+            return;
+        }
+        final var latencies = results.stream().mapToLong(DeliveryResult::latencyMillis).toArray();
+        Arrays.sort(latencies);
+        final var outcomes = new EnumMap<Outcome, Long>(Outcome.class);
+        results.forEach(result -> outcomes.merge(result.outcome(), 1L, Long::sum));
+        log.info("Delivered {} pushes in {} ms with {}, latency p50 {} ms, p95 {} ms, max {} ms", results.size(), durationMillis, outcomes,
+                latencies[latencies.length / 2], latencies[(int) (latencies.length * 0.95)], latencies[latencies.length - 1]);
+    }
+
+    private static String getHost(Subscription subscription) {
+        try {
+            final var host = URI.create(subscription.endpoint).getHost();
+            return host == null ? "" : host;
+        } catch (RuntimeException e) {
+            // Malformed or missing endpoint
+            return "";
+        }
+    }
+
+    private static String readBody(HttpResponse response) {
+        try {
+            final var body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+            return body.length() > maxErrorBodyLength ? body.substring(0, maxErrorBodyLength) : body;
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The refresh jobs as a graph where a job runs after the jobs it depends on have succeeded. The graph is checked for
+ * unknown jobs and cycles when it is created.
+ * <p>
+ * A job never overlaps itself. A run that finds the job busy is not dropped but runs the job and the jobs after it once
+ * more on the executor when the current run ends.
+ */
+@Slf4j
+public class RefreshJobs {
+
+    /**
+     * @param task    returns false when the refresh did not succeed, for example when the source returned no valid data
+     * @param after   the jobs whose successful run is followed by this one
+     * @param cron    the schedule in Finnish time, null for the jobs that only run after others
+     * @param catchUp whether the job runs when the application is ready
+     */
+    public record Job(String name, BooleanSupplier task, List<String> after, String cron, boolean catchUp) {
+    }
+
+    /**
+     * @param skipped the runs that found the job busy
+     */
+    public record JobStatus(String name, List<String> after, String cron, Instant nextRun, boolean running, long runs, long failures, long skipped,
+                            Instant lastStart, long lastDurationMillis, double averageDurationMillis, Instant lastSuccess, String lastError) {
+
+        public boolean isFailing() {
+            return lastError != null;
+        }
+    }
+
+    private static final int idle = 0;
+    private static final int running = 1;
+    private static final int runningAndPending = 2;
+
+    private static class JobState {
+        // One state word so that a run that finds the job busy is never lost between the end of the run and the check
+        private final AtomicInteger state = new AtomicInteger(idle);
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder totalDurationMillis = new LongAdder();
+        private volatile Instant lastStart;
+        private volatile long lastDurationMillis;
+        private volatile Instant lastSuccess;
+        private volatile String lastError;
+    }
+
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private final Map<String, JobState> states = new HashMap<>();
+    private final Map<String, List<String>> dependents = new HashMap<>();
+    private final Executor executor;
+
+    /**
+     * @param executor runs the jobs again whose runs found them busy
+     * @throws IllegalStateException if a job depends on an unknown job or the jobs have a cycle
+     */
+    public RefreshJobs(List<Job> jobs, Executor executor) {
+        this.executor = executor;
+        for (Job job : jobs) {
+            if (this.jobs.put(job.name(), job) != null) {
+                throw new IllegalStateException("Job " + job.name() + " is defined twice");
+            }
+            states.put(job.name(), new JobState());
+            for (String upstream : job.after()) {
+                dependents.computeIfAbsent(upstream, ignored -> new ArrayList<>()).add(job.name());
+            }
+        }
+        for (Job job : jobs) {
+            for (String upstream : job.after()) {
+                if (!this.jobs.containsKey(upstream)) {
+                    throw new IllegalStateException("Job " + job.name() + " is after an unknown job " + upstream);
+                }
+            }
+            // Throws on a cycle
+            downstream(job.name());
+        }
+    }
+
+    public Collection<Job> getJobs() {
+        return jobs.values();
+    }
+
+    public boolean contains(String name) {
+        return jobs.containsKey(name);
+    }
+
+    public List<JobStatus> getStatus(ZonedDateTime now) {
+        final var result = new ArrayList<JobStatus>(jobs.size());
+        for (Job job : jobs.values()) {
+            final var state = states.get(job.name());
+            final var runs = state.runs.sum();
+            final var next = job.cron() == null ? null : CronExpression.parse(job.cron()).next(now);
+            result.add(new JobStatus(job.name(), job.after(), job.cron(), next == null ? null : next.toInstant(), state.state.get() != idle, runs,
+                    state.failures.sum(), state.skipped.sum(), state.lastStart, state.lastDurationMillis,
+                    runs == 0 ? 0 : (double) state.totalDurationMillis.sum() / runs, state.lastSuccess, state.lastError));
+        }
+        return result;
+    }
+
+    /**
+     * Runs the job and then the jobs after it in dependency order. The jobs after a failed or busy job are left for its
+     * next run.
+     */
+    public void runChain(String name, String reason) {
+        final var failed = new HashSet<String>();
+        for (String jobName : downstream(name)) {
+            final var job = jobs.get(jobName);
+            if (!jobName.equals(name) && job.after().stream().anyMatch(failed::contains)) {
+                failed.add(jobName);
+                continue;
+            }
+            if (!run(job, reason)) {
+                failed.add(jobName);
+            }
+        }
+    }
+
+    /**
+     * @return the job and all the jobs after it in an order where every job comes after the jobs it depends on
+     */
+    public List<String> downstream(String name) {
+        final var order = new ArrayList<String>();
+        visit(name, new HashSet<>(), new HashSet<>(), order);
+        Collections.reverse(order);
+        return order;
+    }
+
+    /**
+     * @return true if the job ran successfully
+     */
+    private boolean run(Job job, String reason) {
+        final var state = states.get(job.name());
+        // Retried when the running job ends between the two updates
+        while (!state.state.compareAndSet(idle, running)) {
+            if (state.state.compareAndSet(running, runningAndPending) || state.state.get() == runningAndPending) {
+                state.skipped.increment();
+                log.info("Job {} is already running, it runs again when done", job.name());
+                return false;
+            }
+        }
+        boolean success = false;
+        final var startTime = System.currentTimeMillis();
+        state.lastStart = Instant.ofEpochMilli(startTime);
+        log.info("Started job {} ({})", job.name(), reason);
+        try {
+            if (job.task().getAsBoolean()) {
+                state.lastSuccess = Instant.now();
+                state.lastError = null;
+                success = true;
+            } else {
+                state.failures.increment();
+                state.lastError = "The refresh did not succeed, see the log";
+                log.warn("Job {} did not succeed", job.name());
+            }
+        } catch (RuntimeException e) {
+            state.failures.increment();
+            state.lastError = e.toString();
+            log.error("Job " + job.name() + " failed", e);
+        } finally {
+            final var duration = System.currentTimeMillis() - startTime;
+            state.lastDurationMillis = duration;
+            state.totalDurationMillis.add(duration);
+            state.runs.increment();
+            if (state.state.getAndSet(idle) == runningAndPending) {
+                executor.execute(() -> runChain(job.name(), "missed run"));
+            }
+            log.info("Ended job {} in {} seconds", job.name(), duration / 1000.0);
+        }
+        return success;
+    }
+
+    private void visit(String name, Set<String> visiting, Set<String> visited, List<String> order) {
+        if (visited.contains(name)) {
+            return;
+        }
+        if (!visiting.add(name)) {
+            throw new IllegalStateException("The refresh jobs have a cycle at " + name);
+        }
+        for (String dependent : dependents.getOrDefault(name, List.of())) {
+            visit(dependent, visiting, visited, order);
+        }
+        visiting.remove(name);
+        visited.add(name);
+        order.add(name);
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.vesanieminen.froniusvisualizer.util.VatSchedule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+
+/**
+ * Runs the data refreshes of the {@link RefreshJobs}. A job runs on its cron schedule in Finnish time, so the runs
+ * follow the DST changes, and a scheduled run starts after a random jitter so that the refreshes of several instances
+ * do not hit the sources at the same second.
+ * <p>
+ * The price sources are independent of each other, so an outage of one source does not stop the others. The Pakastin
+ * download is followed by the jobs that load the spot data from its file and build the price list from the spot data.
+ * <p>
+ * The persisted snapshots are restored before the application starts, and the jobs that keep the data current run
+ * once when it is ready to catch up the time it was down.
+ */
+@Service
+@Slf4j
+public class RefreshOrchestrator {
+
+    private static final String hourly = "0 0 * * * *";
+
+    @Value("${refresh.jitter.seconds:20}")
+    private long jitterSeconds;
+    @Value("${refresh.threads:4}")
+    private int threads;
+    @Value("${vat.schedule.file:}")
+    private String vatScheduleFile;
+
+    private ThreadPoolTaskScheduler scheduler;
+    private RefreshJobs jobs;
+
+    private static List<RefreshJobs.Job> createJobs() {
+        return List.of(
+                new RefreshJobs.Job("nordpool", () -> NordpoolSpotService.updateNordpoolData(false), List.of(), hourly, true),
+                new RefreshJobs.Job("pakastin", PakastinSpotService::getAndWriteToFile2YearData, List.of(), hourly, true),
+                new RefreshJobs.Job("spot-data", PriceCalculatorService::refreshSpotData, List.of("pakastin"), null, false),
+                new RefreshJobs.Job("price-list", PriceCalculatorService::refreshPriceList, List.of("spot-data"), null, false),
+                new RefreshJobs.Job("spothinta", SpotHintaService::updateData, List.of(), hourly, true),
+                new RefreshJobs.Job("zones", ZonePriceService::updateData, List.of(), hourly, true),
+                // Tomorrow's prices are published around 13:45
+                new RefreshJobs.Job("nordpool-tomorrow", () -> NordpoolSpotService.updateNordpoolData(true), List.of(), "0 51 13 * * *", false),
+                new RefreshJobs.Job("fingrid", RefreshOrchestrator::updateFingridData, List.of(), "30 1 * * * *", true),
+                // FMI publishes the full hour observations within minutes
+                new RefreshJobs.Job("fmi", FmiService::updateData, List.of(), "0 40 * * * *", true));
+    }
+
+    @PostConstruct
+    private void init() {
+        // The restored prices are stored with VAT
+        VatSchedule.configureFi(vatScheduleFile);
+        restoreSnapshots();
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("refresh-");
+        scheduler.setDaemon(true);
+        scheduler.initialize();
+        jobs = new RefreshJobs(createJobs(), scheduler);
+        for (RefreshJobs.Job job : jobs.getJobs()) {
+            if (job.cron() != null) {
+                scheduler.schedule(() -> scheduler.schedule(() -> jobs.runChain(job.name(), "schedule"), Instant.now().plusMillis(jitterMillis())),
+                        new CronTrigger(job.cron(), fiZoneID));
+            }
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUp() {
+        for (RefreshJobs.Job job : jobs.getJobs()) {
+            if (job.catchUp()) {
+                scheduler.execute(() -> jobs.runChain(job.name(), "startup"));
+            }
+        }
+    }
+
+    /**
+     * Runs a job and the jobs after it now, for the admin view.
+     *
+     * @return false if there is no such job
+     */
+    public boolean trigger(String name) {
+        if (!jobs.contains(name)) {
+            return false;
+        }
+        scheduler.execute(() -> jobs.runChain(name, "admin"));
+        return true;
+    }
+
+    public List<RefreshJobs.JobStatus> getStatus() {
+        return jobs.getStatus(ZonedDateTime.now(fiZoneID));
+    }
+
+    private long jitterMillis() {
+        return jitterSeconds <= 0 ? 0 : ThreadLocalRandom.current().nextLong(TimeUnit.SECONDS.toMillis(jitterSeconds));
+    }
+
+    /**
+     * Loads the persisted snapshots of every dataset in parallel so that the app can serve data right after boot. The
+     * network refreshes only reconcile the data in the background.
+     */
+    private static void restoreSnapshots() {
+        log.info("Started restoreSnapshots");
+        final var startTime = System.currentTimeMillis();
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(NordpoolSpotService::restore),
+                CompletableFuture.runAsync(PakastinSpotService::restore),
+                CompletableFuture.runAsync(FingridService::restore),
+                CompletableFuture.runAsync(SpotHintaService::restore),
+                CompletableFuture.runAsync(FmiService::restore),
+                CompletableFuture.runAsync(ZonePriceService::restore)
+        ).exceptionally(e -> {
+            log.error("Could not restore all snapshots", e);
+            return null;
+        }).join();
+        log.info("Ended restoreSnapshots in " + (System.currentTimeMillis() - startTime) / 1000.0 + " seconds");
+    }
+
+    private static boolean updateFingridData() {
+        try {
+            final var realtime = FingridService.updateRealtimeData();
+            TimeUnit.MILLISECONDS.sleep(500);
+            final var windEstimate = FingridService.updateWindEstimateData();
+            return realtime && windEstimate;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while updating the Fingrid data", e);
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes {@link TimeSeries} for the REST APIs, straight from the primitive arrays.
+ * <p>
+ * The columnar format ({@link #columnarMediaType}) is big endian:
+ * <pre>
+ * magic   4 bytes  "LSR1"
+ * flags   int8     bit 0: float32 values instead of scaled int16, bit 1: explicit time offsets follow the header
+ * start   int64    epoch millis of the first value
+ * step    int32    milliseconds between values, 0 when the offsets are explicit
+ * count   int32    number of values
+ * scale   float32  value = stored / scale for int16 values, 1 for float32
+ * offsets count * int32, seconds from start (only with flag bit 1)
+ * values  count * int16 or float32, a missing value is Short.MIN_VALUE or NaN
+ * </pre>
+ * Hourly series with gaps are sent with a step and the gaps as missing values. Series that are not evenly spaced,
+ * like calendar days over a DST change, are sent with explicit offsets.
+ */
+public class SeriesEncoder {
+
+    public static final String columnarMediaType = "application/vnd.liukuri.series";
+    public static final String csvMediaType = "text/csv";
+    private static final byte[] magic = "LSR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int headerSize = 4 + 1 + 8 + 4 + 4 + 4;
+    private static final byte floatValues = 1;
+    private static final byte explicitOffsets = 2;
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * @param etag     the entity tag of the identity body
+     * @param gzipEtag the entity tag of the gzipped body, the two representations are not byte for byte the same
+     */
+    public record Payload(byte[] body, byte[] gzipBody, String etag, String gzipEtag, String contentType, boolean isFinal) {
+
+        public static Payload of(byte[] body, String contentType, boolean isFinal) {
+            // Derived from the content, so a data update that does not change the body keeps the clients' copies valid
+            final var hash = HexFormat.of().formatHex(sha256(body), 0, 12);
+            return new Payload(body, gzip(body), "\"" + hash + "\"", "\"" + hash + "-gzip\"", contentType, isFinal);
+        }
+    }
+
+    /**
+     * @param step  the expected distance of the values in milliseconds
+     * @param scale multiplier used to store the values as int16, the values fall back to float32 if any does not fit
+     */
+    public static byte[] toColumnar(TimeSeries series, long step, double scale) {
+        final var times = series.times();
+        final var values = series.values();
+        final var hasOffsets = !isEvenlySpaced(times, step);
+        final var count = series.isEmpty() || hasOffsets ? times.length : (int) ((times[times.length - 1] - times[0]) / step) + 1;
+        final var isInt16 = fitsInt16(values, scale);
+        final var size = headerSize + (hasOffsets ? count * 4 : 0) + count * (isInt16 ? 2 : 4);
+        final var buffer = ByteBuffer.allocate(size);
+        buffer.put(magic);
+        buffer.put((byte) ((isInt16 ? 0 : floatValues) | (hasOffsets ? explicitOffsets : 0)));
+        buffer.putLong(series.isEmpty() ? 0 : times[0]);
+        buffer.putInt(hasOffsets ? 0 : (int) step);
+        buffer.putInt(count);
+        buffer.putFloat(isInt16 ? (float) scale : 1f);
+        if (hasOffsets) {
+            for (long time : times) {
+                buffer.putInt((int) ((time - times[0]) / 1000));
+            }
+        }
+        // Evenly spaced series may have gaps, those are written as missing values
+        var next = 0;
+        for (int i = 0; i < count; ++i) {
+            final var hasValue = hasOffsets || times[next] == times[0] + i * step;
+            final var value = hasValue ? values[next++] : Double.NaN;
+            if (isInt16) {
+                buffer.putShort(Double.isNaN(value) ? Short.MIN_VALUE : (short) Math.round(value * scale));
+            } else {
+                buffer.putFloat((float) value);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static byte[] toCsv(TimeSeries series, String valueName) {
+        final var builder = new StringBuilder(16 + series.size() * 32);
+        builder.append("start,").append(valueName).append('\n');
+        for (int i = 0; i < series.size(); ++i) {
+            builder.append(Instant.ofEpochMilli(series.times()[i])).append(',').append(series.values()[i]).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes {"field": value, ..., "arrayName": [{"start": ..., "valueName": ...}, ...]}.
+     *
+     * @param fields field names and values in turns, the values are strings, numbers or booleans
+     */
+    public static byte[] toJson(TimeSeries series, String arrayName, String valueName, Object... fields) {
+        final var outputStream = new ByteArrayOutputStream(64 + series.size() * 48);
+        try (var generator = jsonFactory.createGenerator(outputStream)) {
+            generator.writeStartObject();
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                generator.writeObjectField((String) fields[i], fields[i + 1]);
+            }
+            generator.writeArrayFieldStart(arrayName);
+            for (int i = 0; i < series.size(); ++i) {
+                generator.writeStartObject();
+                generator.writeStringField("start", Instant.ofEpochMilli(series.times()[i]).toString());
+                generator.writeNumberField(valueName, series.values()[i]);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static boolean isEvenlySpaced(long[] times, long step) {
+        if (times.length == 0) {
+            return true;
+        }
+        for (long time : times) {
+            if ((time - times[0]) % step != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean fitsInt16(double[] values, double scale) {
+        for (double value : values) {
+            final var scaled = Math.round(value * scale);
+            // Short.MIN_VALUE is reserved for missing values
+            if (scaled <= Short.MIN_VALUE || scaled > Short.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] sha256(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        final var outputStream = new ByteArrayOutputStream(body.length / 4 + 32);
+        try (var gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.fatboyindustrial.gsonjavatime.Converters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Local file store for the last good snapshot of each ingested dataset, so that a restart can serve data before any
+ * upstream has answered.
+ */
+@Slf4j
+public class SnapshotStore {
+
+    public static final String snapshotDirectory = "snapshots";
+    private static final Gson gson = Converters.registerAll(new GsonBuilder()).create();
+
+    public static void write(String name, Object value) {
+        final var path = getPath(name);
+        final var tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            Files.writeString(tempPath, gson.toJson(value));
+            // Readers never see a half written snapshot
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Could not write snapshot " + name, e);
+        }
+    }
+
+    public static boolean exists(String name) {
+        return Files.exists(getPath(name));
+    }
+
+    public static <T> Optional<Snapshot<T>> read(String name, Type type) {
+        final var path = getPath(name);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            final T value = gson.fromJson(Files.readString(path), type);
+            if (value == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new Snapshot<>(value, Files.getLastModifiedTime(path).toInstant()));
+        } catch (IOException | JsonParseException e) {
+            log.error("Could not read snapshot " + name, e);
+            return Optional.empty();
+        }
+    }
+
+    private static Path getPath(String name) {
+        return Paths.get(snapshotDirectory, name + ".json");
+    }
+
+    public record Snapshot<T>(T value, Instant written) {
+    }
+
+}
@@ -2,6 +2,7 @@ package com.vesanieminen.froniusvisualizer.services;
 
 import com.fatboyindustrial.gsonjavatime.Converters;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import com.vesanieminen.froniusvisualizer.services.model.SpotHintaResponse;
 import com.vesanieminen.froniusvisualizer.util.Utils;
 import lombok.extern.slf4j.Slf4j;
@@ -21,10 +22,19 @@ import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
 @Slf4j
 public class SpotHintaService {
 
-    private static List<SpotHintaResponse> spotHintaResponse;
+    private static final DataCache<List<SpotHintaResponse>> cache = new DataCache<>("spot-hinta.fi temperatures", "spot-hinta-temperatures", new TypeToken<List<SpotHintaResponse>>() {
+    }.getType());
     private static String query = "https://api.spot-hinta.fi/PostalCodeTemperatures/14700";
 
-    public static void updateData() {
+    public static void restore() {
+        cache.restore();
+    }
+
+    public static boolean updateData() {
+        return cache.refresh(SpotHintaService::fetchTemperatureForecast);
+    }
+
+    private static List<SpotHintaResponse> fetchTemperatureForecast() {
         var newSpotHintaResponse = runAndMapToResponse(query);
         var time = ZonedDateTime.of(Utils.getCurrentTimeWithHourPrecision(), fiZoneID).plusHours(36);
         if (newSpotHintaResponse.size() > 1) {
@@ -43,8 +53,9 @@ public class SpotHintaService {
                 //}
                 previous = newSpotHintaResponse.get(i).TimeStamp;
             }
-            spotHintaResponse = newSpotHintaResponse;
+            return newSpotHintaResponse;
         }
+        return null;
     }
 
     public static List<SpotHintaResponse> runAndMapToResponse(String query) {
@@ -70,7 +81,11 @@ public class SpotHintaService {
     }
 
     public static List<SpotHintaResponse> getLatest() {
-        return spotHintaResponse;
+        return cache.get();
+    }
+
+    public static DataCache<List<SpotHintaResponse>> getCache() {
+        return cache;
     }
 
 }
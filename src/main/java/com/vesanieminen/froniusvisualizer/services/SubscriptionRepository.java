@@ -1,9 +1,24 @@
 package com.vesanieminen.froniusvisualizer.services;
 
 import com.vesanieminen.froniusvisualizer.services.model.NotificationSubscription;
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.Collection;
 import java.util.UUID;
 
 public interface SubscriptionRepository extends CrudRepository<NotificationSubscription, UUID> {
+
+    /**
+     * Deletes the subscriptions and their notifications in one statement.
+     *
+     * @return the number of deleted subscriptions
+     */
+    @Modifying
+    @Query("""
+            WITH deleted_notifications AS (DELETE FROM notification WHERE subscription_id IN (:ids))
+            DELETE FROM subscription WHERE id IN (:ids)
+            """)
+    int deleteWithNotifications(Collection<UUID> ids);
 }
@@ -0,0 +1,131 @@
+package com.vesanieminen.froniusvisualizer.services;
+
+import com.fatboyindustrial.gsonjavatime.Converters;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.SpotHintaPrice;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Day-ahead prices for the bidding zones other than Finland, from the spot-hinta.fi API. Finland keeps using the
+ * Nordpool and Pakastin sources, which also have the long history.
+ * <p>
+ * The API only returns today and tomorrow, so every refresh is merged into the previous snapshot and the history is
+ * trimmed to {@link #maxHistory}. The {@link PriceStore} is rebuilt once after all zones have been refreshed.
+ */
+@Slf4j
+public class ZonePriceService {
+
+    private static final String url = "https://api.spot-hinta.fi/TodayAndDayForward?region=%s";
+    private static final Duration maxHistory = Duration.ofDays(31);
+    private static final Type priceListType = new TypeToken<List<SpotHintaPrice>>() {
+    }.getType();
+    private static final Map<BiddingZone, DataCache<List<SpotHintaPrice>>> caches = new EnumMap<>(BiddingZone.class);
+
+    static {
+        for (BiddingZone zone : BiddingZone.values()) {
+            if (zone == BiddingZone.FI) {
+                continue;
+            }
+            caches.put(zone, new DataCache<>(zone.region + " prices", "zone-prices-" + zone.region, priceListType));
+        }
+    }
+
+    public static void restore() {
+        var restored = false;
+        for (DataCache<List<SpotHintaPrice>> cache : caches.values()) {
+            restored |= cache.restore();
+        }
+        if (restored) {
+            PriceStore.rebuild();
+        }
+    }
+
+    /**
+     * @return false if the refresh of any zone failed
+     */
+    public static boolean updateData() {
+        var success = true;
+        var refreshed = false;
+        for (Map.Entry<BiddingZone, DataCache<List<SpotHintaPrice>>> entry : caches.entrySet()) {
+            final var zone = entry.getKey();
+            if (!hasTomorrowsPrices(zone)) {
+                final var zoneRefreshed = entry.getValue().refresh(() -> fetchPrices(zone));
+                success &= zoneRefreshed;
+                refreshed |= zoneRefreshed;
+            }
+        }
+        if (refreshed) {
+            PriceStore.rebuild();
+        }
+        return success;
+    }
+
+    public static List<SpotHintaPrice> getPrices(BiddingZone zone) {
+        final var cache = caches.get(zone);
+        return cache == null ? null : cache.get();
+    }
+
+    public static Map<BiddingZone, DataCache<List<SpotHintaPrice>>> getCaches() {
+        return caches;
+    }
+
+    private static boolean hasTomorrowsPrices(BiddingZone zone) {
+        final var prices = getPrices(zone);
+        if (prices == null || prices.isEmpty()) {
+            return false;
+        }
+        final var lastHourOfTomorrow = ZonedDateTime.now(zone.zoneId).truncatedTo(ChronoUnit.DAYS).plusDays(2).minusHours(1);
+        return !prices.get(prices.size() - 1).DateTime.isBefore(lastHourOfTomorrow);
+    }
+
+    private static List<SpotHintaPrice> fetchPrices(BiddingZone zone) {
+        final HttpRequest request;
+        final HttpResponse<String> response;
+        try {
+            request = HttpRequest.newBuilder().uri(new URI(url.formatted(zone.region))).GET().build();
+            response = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build().send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (URISyntaxException | IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        if (response.statusCode() != 200) {
+            return null;
+        }
+        final var gson = Converters.registerAll(new GsonBuilder()).create();
+        final var newPrices = gson.fromJson(response.body(), SpotHintaPrice[].class);
+        if (newPrices == null || newPrices.length == 0 || !Arrays.stream(newPrices).allMatch(SpotHintaPrice::isValid)) {
+            return null;
+        }
+        return merge(getPrices(zone), Arrays.asList(newPrices));
+    }
+
+    private static List<SpotHintaPrice> merge(List<SpotHintaPrice> previous, List<SpotHintaPrice> latest) {
+        final var merged = new TreeMap<Instant, SpotHintaPrice>();
+        final var oldest = Instant.now().minus(maxHistory);
+        if (previous != null) {
+            previous.forEach(price -> merged.put(price.DateTime.toInstant(), price));
+        }
+        latest.forEach(price -> merged.put(price.DateTime.toInstant(), price));
+        return new ArrayList<>(merged.tailMap(oldest).values());
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.vesanieminen.froniusvisualizer.services.model;
+
+import com.vesanieminen.froniusvisualizer.util.VatSchedule;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+
+/**
+ * The Nord Pool bidding zones we have prices for. The region is the area code used by the spot-hinta.fi API.
+ */
+public enum BiddingZone {
+    FI("FI", fiZoneID, VatSchedule.fi(), true),
+    SE1("SE1", ZoneId.of("Europe/Stockholm"), VatSchedule.flat(1.25), false),
+    SE2("SE2", ZoneId.of("Europe/Stockholm"), VatSchedule.flat(1.25), false),
+    SE3("SE3", ZoneId.of("Europe/Stockholm"), VatSchedule.flat(1.25), false),
+    SE4("SE4", ZoneId.of("Europe/Stockholm"), VatSchedule.flat(1.25), false),
+    EE("EE", ZoneId.of("Europe/Tallinn"), VatSchedule.of(ZoneId.of("Europe/Tallinn"), "2009-07-01;1.20", "2024-01-01;1.22", "2025-07-01;1.24"), false),
+    NO1("NO1", ZoneId.of("Europe/Oslo"), VatSchedule.flat(1.25), false),
+    NO2("NO2", ZoneId.of("Europe/Oslo"), VatSchedule.flat(1.25), false),
+    NO3("NO3", ZoneId.of("Europe/Oslo"), VatSchedule.flat(1.25), false),
+    // Households in Nordland, Troms and Finnmark do not pay VAT on electricity
+    NO4("NO4", ZoneId.of("Europe/Oslo"), VatSchedule.flat(1.0), false),
+    NO5("NO5", ZoneId.of("Europe/Oslo"), VatSchedule.flat(1.25), false),
+    DK1("DK1", ZoneId.of("Europe/Copenhagen"), VatSchedule.flat(1.25), false),
+    DK2("DK2", ZoneId.of("Europe/Copenhagen"), VatSchedule.flat(1.25), false);
+
+    public final String region;
+    public final ZoneId zoneId;
+    private final VatSchedule vatSchedule;
+    // Fingrid production, consumption and FMI temperature data only exist for Finland
+    public final boolean hasFinnishGridData;
+
+    BiddingZone(String region, ZoneId zoneId, VatSchedule vatSchedule, boolean hasFinnishGridData) {
+        this.region = region;
+        this.zoneId = zoneId;
+        this.vatSchedule = vatSchedule;
+        this.hasFinnishGridData = hasFinnishGridData;
+    }
+
+    public double getVat(Instant instant) {
+        return vatSchedule.getMultiplier(instant);
+    }
+
+    public VatSchedule getVatSchedule() {
+        return vatSchedule;
+    }
+
+    /**
+     * @return the zone of the name in any case, FI if the name is missing or unknown
+     */
+    public static BiddingZone fromString(String value) {
+        if (value == null) {
+            return FI;
+        }
+        for (BiddingZone zone : values()) {
+            if (zone.name().equalsIgnoreCase(value)) {
+                return zone;
+            }
+        }
+        return FI;
+    }
+
+}
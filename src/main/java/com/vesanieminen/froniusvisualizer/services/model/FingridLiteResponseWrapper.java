@@ -5,6 +5,15 @@ import java.util.List;
 public class FingridLiteResponseWrapper {
 
     public List<FingridLiteResponse> data;
+    public Pagination pagination;
+
+    public static class Pagination {
+        public int total;
+        public int currentPage;
+        public int lastPage;
+        public Integer nextPage;
+        public int perPage;
+    }
 
     //{
     //    "data": [{
@@ -13,5 +22,17 @@ public class FingridLiteResponseWrapper {
     //            "endTime": "2024-05-01T19:15:00.000Z",
     //            "value": 775
     //}, {
+    //    ...
+    //}],
+    //    "pagination": {
+    //    "total": 2880,
+    //            "lastPage": 3,
+    //            "prevPage": null,
+    //            "nextPage": 2,
+    //            "perPage": 1000,
+    //            "currentPage": 1,
+    //            "from": 0,
+    //            "to": 1000
+    //}
 
 }
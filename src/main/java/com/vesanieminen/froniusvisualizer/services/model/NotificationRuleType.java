@@ -0,0 +1,45 @@
+package com.vesanieminen.froniusvisualizer.services.model;
+
+/**
+ * The kinds of price notification rules. The parameter of a rule is used by the types that have a default for it.
+ */
+public enum NotificationRuleType {
+    /**
+     * The price crosses the rule's price in the rule's direction
+     */
+    THRESHOLD(Double.NaN),
+    /**
+     * The price goes below the average of its day
+     */
+    BELOW_DAY_AVERAGE(Double.NaN),
+    /**
+     * An hour that is among the parameter's number of cheapest hours of its day starts
+     */
+    CHEAPEST_HOURS(3),
+    /**
+     * The price goes above the parameter times the average of its month
+     */
+    SPIKE(2),
+    /**
+     * The price goes below zero
+     */
+    NEGATIVE_PRICE(Double.NaN);
+
+    private final double defaultParam;
+
+    NotificationRuleType(double defaultParam) {
+        this.defaultParam = defaultParam;
+    }
+
+    public boolean hasParam() {
+        return !Double.isNaN(defaultParam);
+    }
+
+    /**
+     * @return the given parameter or the default of the type, NaN for the types without a parameter
+     */
+    public double getParam(Double param) {
+        return !hasParam() ? Double.NaN : param == null ? defaultParam : param;
+    }
+
+}
@@ -32,5 +32,10 @@ public class PriceNotification {
     double price = 20;
     boolean up = true;
     String extraMsg = "";
+    NotificationRuleType ruleType = NotificationRuleType.THRESHOLD;
+    // The number of hours or the multiplier of the rule type, null for its default
+    Double param;
+    // Minutes to warn before the rule fires, null or 0 to notify when it fires
+    Integer prewarn;
 
 }
@@ -0,0 +1,17 @@
+package com.vesanieminen.froniusvisualizer.services.model;
+
+import java.time.ZonedDateTime;
+
+/**
+ * One row of the spot-hinta.fi TodayAndDayForward response. The prices are in EUR/kWh.
+ */
+public class SpotHintaPrice implements ResponseValidator {
+    public ZonedDateTime DateTime;
+    public double PriceNoTax;
+
+    @Override
+    public Object[] getObjects() {
+        return new Object[]{this, DateTime};
+    }
+
+}
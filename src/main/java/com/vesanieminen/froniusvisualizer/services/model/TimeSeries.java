@@ -0,0 +1,31 @@
+package com.vesanieminen.froniusvisualizer.services.model;
+
+import java.util.Arrays;
+
+/**
+ * Ready to plot series: epoch millisecond timestamps and their values, built once when the data is ingested.
+ */
+public record TimeSeries(long[] times, double[] values) {
+
+    private static final TimeSeries empty = new TimeSeries(new long[0], new double[0]);
+
+    public static TimeSeries empty() {
+        return empty;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    /**
+     * @return the index of the given time or a negative value if the series does not have it
+     */
+    public int indexOf(long time) {
+        return Arrays.binarySearch(times, time);
+    }
+
+}
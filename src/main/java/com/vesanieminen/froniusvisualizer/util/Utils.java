@@ -12,7 +12,6 @@ import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.ZoneId;
@@ -21,8 +20,6 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -32,11 +29,6 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static com.vesanieminen.froniusvisualizer.services.NordpoolSpotService.getLatest7DaysMap;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.getSpotData;
-import static com.vesanieminen.froniusvisualizer.views.NordpoolspotView.vat10Value;
-import static com.vesanieminen.froniusvisualizer.views.NordpoolspotView.vat24Value;
-
 public class Utils {
 
     public static final NumberFormat numberFormat = NumberFormat.getInstance(Locale.FRANCE);
@@ -49,9 +41,6 @@ public class Utils {
     public static final Locale enLocale = new Locale("en", "GB");
     public static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
 
-    public static final Instant vat10InstantStart = Instant.from(ZonedDateTime.of(2022, 12, 1, 0, 0, 0, 0, fiZoneID));
-    public static final Instant vat10InstantEnd = Instant.from(ZonedDateTime.of(2023, 5, 1, 0, 0, 0, 0, fiZoneID));
-
     public static boolean notNull(Object... objects) {
         return Arrays.stream(objects).allMatch(Objects::nonNull);
     }
@@ -177,15 +166,11 @@ public class Utils {
         return format;
     }
 
-    public static double getVAT(Instant instant, double vat) {
-        if (vat == 1) {
-            return 1;
-        }
-        return getVAT(instant);
-    }
-
+    /**
+     * The Finnish VAT multiplier of a single time, see {@link VatSchedule} for whole series.
+     */
     public static double getVAT(Instant instant) {
-        return 0 <= instant.compareTo(vat10InstantStart) && instant.compareTo(vat10InstantEnd) < 0 ? vat10Value : vat24Value;
+        return VatSchedule.fi().getMultiplier(instant);
     }
 
     public static OptionalDouble average(List<Double> list) {
@@ -216,61 +201,9 @@ public class Utils {
         return item -> item.getKey().atZone(fiZoneID).getDayOfMonth() == day && item.getKey().atZone(fiZoneID).getMonthValue() == month && item.getKey().atZone(fiZoneID).getYear() == year;
     }
 
-    public static double calculateMinimumOfDay(LocalDate localDate, LinkedHashMap<Instant, Double> data) {
-        final var day = localDate.getDayOfMonth();
-        final var month = localDate.getMonthValue();
-        final var year = localDate.getYear();
-        return data.entrySet().stream().filter(dayFilter(day, month, year)).map(item -> item.getValue() * getVAT(item.getKey())).min(Comparator.comparingDouble(p -> p)).orElse(0d);
-    }
-
-    public static double calculateMaximumOfDay(LocalDate localDate, LinkedHashMap<Instant, Double> data) {
-        final var day = localDate.getDayOfMonth();
-        final var month = localDate.getMonthValue();
-        final var year = localDate.getYear();
-        return data.entrySet().stream().filter(dayFilter(day, month, year)).map(item -> item.getValue() * getVAT(item.getKey())).max(Comparator.comparingDouble(p -> p)).orElse(0d);
-    }
-
-    public static CheapestHours calculateCheapest3HoursOfDay(LocalDate localDate, LinkedHashMap<Instant, Double> data) {
-        final var day = localDate.getDayOfMonth();
-        final var month = localDate.getMonthValue();
-        final var year = localDate.getYear();
-        final var list = data.entrySet().stream().filter(dayFilter(day, month, year)).map(
-                item -> Map.entry(item.getKey(), item.getValue() * getVAT(item.getKey()))
-        ).toList();
-        var cheapestHours = new CheapestHours(list.get(0).getKey(), list.get(2).getKey(), (list.get(0).getValue() + list.get(1).getValue() + list.get(2).getValue()) / 3);
-        for (int i = 1; i < list.size() - 2; ++i) {
-            final var candidate = new CheapestHours(list.get(i).getKey(), list.get(i + 2).getKey(), (list.get(i).getValue() + list.get(i + 1).getValue() + list.get(i + 2).getValue()) / 3);
-            if (candidate.averagePrice() < cheapestHours.averagePrice()) {
-                cheapestHours = candidate;
-            }
-        }
-        return cheapestHours;
-    }
-
     public record CheapestHours(Instant from, Instant to, double averagePrice) {
     }
 
-    public static double calculateAverageOfDay(LocalDate localDate, LinkedHashMap<Instant, Double> data) {
-        final var day = localDate.getDayOfMonth();
-        final var month = localDate.getMonthValue();
-        final var year = localDate.getYear();
-        return data.entrySet().stream().filter(dayFilter(day, month, year)).map(item -> item.getValue() * getVAT(item.getKey())).reduce(0d, Double::sum) / data.entrySet().stream().filter(dayFilter(day, month, year)).count();
-    }
-
-    public static double calculateSpotAveragePriceOfMonth(LocalDate localDate, LinkedHashMap<Instant, Double> data) {
-        final var month = localDate.getMonthValue();
-        final var year = localDate.getYear();
-        return data.entrySet().stream().filter(monthFilter(month, year)).map(item -> item.getValue() * getVAT(item.getKey())).reduce(0d, Double::sum) / data.entrySet().stream().filter(monthFilter(month, year)).count();
-    }
-
-    public static LinkedHashMap<Instant, Double> getCombinedSpotData() {
-        final var spotData = getSpotData();
-        final var combinedSpotData = new LinkedHashMap<>(spotData);
-        final var latest7DaysMap = getLatest7DaysMap();
-        combinedSpotData.putAll(latest7DaysMap);
-        return combinedSpotData;
-    }
-
     public static boolean isDaylightSavingsInFinland() {
         return fiZoneID.getRules().isDaylightSavings(getCurrentInstantHourPrecisionFinnishZone());
     }
@@ -0,0 +1,173 @@
+package com.vesanieminen.froniusvisualizer.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+
+/**
+ * VAT multipliers as a table of intervals, each rate is valid from its start until the start of the next one. The
+ * times before the first start have the first rate.
+ * <p>
+ * The Finnish schedule is read from vat_fi.csv, or from the file of the vat.schedule.file application property, with
+ * one "first day;multiplier" line per rate.
+ */
+public class VatSchedule {
+
+    private static volatile VatSchedule fi = load(null, fiZoneID);
+
+    private final long[] starts;
+    private final double[] multipliers;
+
+    private VatSchedule(long[] starts, double[] multipliers) {
+        this.starts = starts;
+        this.multipliers = multipliers;
+    }
+
+    public static VatSchedule fi() {
+        return fi;
+    }
+
+    /**
+     * Replaces the Finnish schedule with the one in the file, or with vat_fi.csv when the file is blank. Called at
+     * startup before any prices are loaded.
+     */
+    public static void configureFi(String file) {
+        fi = load(file, fiZoneID);
+    }
+
+    /**
+     * @return a schedule with the same rate for all times
+     */
+    public static VatSchedule flat(double multiplier) {
+        return new VatSchedule(new long[]{Long.MIN_VALUE}, new double[]{multiplier});
+    }
+
+    /**
+     * @param rates "yyyy-MM-dd;multiplier" in ascending order
+     */
+    public static VatSchedule of(ZoneId zoneId, String... rates) {
+        return parse(List.of(rates), zoneId);
+    }
+
+    /**
+     * @param lines "yyyy-MM-dd;multiplier" in ascending order, blank lines and lines starting with # are skipped
+     */
+    public static VatSchedule parse(List<String> lines, ZoneId zoneId) {
+        final var starts = new ArrayList<Long>();
+        final var multipliers = new ArrayList<Double>();
+        for (String line : lines) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            final var parts = line.split(";");
+            final var start = LocalDate.parse(parts[0].trim()).atStartOfDay(zoneId).toInstant().toEpochMilli();
+            if (!starts.isEmpty() && start <= starts.get(starts.size() - 1)) {
+                throw new IllegalArgumentException("The VAT rates are not in ascending order: " + line);
+            }
+            starts.add(start);
+            multipliers.add(Double.parseDouble(parts[1].trim()));
+        }
+        if (starts.isEmpty()) {
+            throw new IllegalArgumentException("The VAT schedule has no rates");
+        }
+        return new VatSchedule(starts.stream().mapToLong(Long::longValue).toArray(), multipliers.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    private static VatSchedule load(String file, ZoneId zoneId) {
+        try {
+            if (file != null && !file.isBlank()) {
+                return parse(Files.readAllLines(Path.of(file)), zoneId);
+            }
+            try (InputStream inputStream = VatSchedule.class.getResourceAsStream("/vat_fi.csv")) {
+                if (inputStream == null) {
+                    throw new IllegalStateException("vat_fi.csv is missing");
+                }
+                return parse(new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines().toList(), zoneId);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public double getMultiplier(Instant instant) {
+        return getMultiplier(instant.toEpochMilli());
+    }
+
+    public double getMultiplier(long timeMillis) {
+        return multipliers[indexOf(timeMillis)];
+    }
+
+    /**
+     * Applies the VAT to values on a regular time axis. Every interval of the schedule is one plain loop with a
+     * constant multiplier, so there is no lookup per value. NaN values stay NaN.
+     *
+     * @return the values with VAT in a new array
+     */
+    public double[] apply(long startMillis, long stepMillis, double[] values) {
+        final var result = new double[values.length];
+        var from = 0;
+        for (int interval = indexOf(startMillis); from < values.length; ++interval) {
+            var to = values.length;
+            if (interval + 1 < starts.length) {
+                // The index of the first value at or after the start of the next interval
+                final var next = -Math.floorDiv(startMillis - starts[interval + 1], stepMillis);
+                to = (int) Math.max(from, Math.min(values.length, next));
+            }
+            final var multiplier = multipliers[interval];
+            for (int i = from; i < to; ++i) {
+                result[i] = values[i] * multiplier;
+            }
+            from = to;
+        }
+        return result;
+    }
+
+    /**
+     * Applies the VAT to values whose times are in ascending order, with one loop per interval like the regular axis.
+     *
+     * @return the values with VAT in a new array
+     */
+    public double[] apply(long[] times, double[] values) {
+        final var result = new double[values.length];
+        var from = 0;
+        while (from < values.length) {
+            final var interval = indexOf(times[from]);
+            final var end = interval + 1 < starts.length ? starts[interval + 1] : Long.MAX_VALUE;
+            final var multiplier = multipliers[interval];
+            var i = from;
+            for (; i < values.length && times[i] < end; ++i) {
+                result[i] = values[i] * multiplier;
+            }
+            from = i;
+        }
+        return result;
+    }
+
+    private int indexOf(long timeMillis) {
+        var low = 0;
+        var high = starts.length - 1;
+        // The last start at or before the time
+        while (low < high) {
+            final var middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= timeMillis) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+}
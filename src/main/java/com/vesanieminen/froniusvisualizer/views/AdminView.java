@@ -2,12 +2,43 @@ package com.vesanieminen.froniusvisualizer.views;
 
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.H3;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.router.BeforeEnterEvent;
+import com.vaadin.flow.router.BeforeEnterObserver;
+import com.vaadin.flow.router.NotFoundException;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.theme.lumo.LumoUtility;
+import com.vesanieminen.froniusvisualizer.services.FootprintService;
+import com.vesanieminen.froniusvisualizer.services.NotificationService;
+import com.vesanieminen.froniusvisualizer.services.RefreshJobs;
+import com.vesanieminen.froniusvisualizer.services.RefreshOrchestrator;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Requires the admin.token property as the token query parameter, without it the route does not exist.
+ */
 @Route("admin")
-public class AdminView extends Div {
+public class AdminView extends Div implements BeforeEnterObserver {
+
+    private final String adminToken;
+    private final FootprintService footprintService;
+    private final NotificationService notificationService;
+    private final RefreshOrchestrator refreshOrchestrator;
+    private final Div footprint = new Div();
+    private final Div deliveryHealth = new Div();
+    private final Div refreshJobs = new Div();
 
-    public AdminView() {
+    public AdminView(@Value("${admin.token:}") String adminToken, FootprintService footprintService, NotificationService notificationService, RefreshOrchestrator refreshOrchestrator) {
+        this.adminToken = adminToken;
+        this.footprintService = footprintService;
+        this.notificationService = notificationService;
+        this.refreshOrchestrator = refreshOrchestrator;
+        addClassNames(LumoUtility.Padding.MEDIUM);
         final var updateFingrid = new Button(getTranslation("Update Fingrid data"));
         //updateFingrid.addClickListener(e -> {
         //    FingridService.updateWindEstimateData();
@@ -30,6 +61,70 @@ public class AdminView extends Div {
         //add(updateButton);
 
         //add(new H1("" + (!isAfter_13_50(ZonedDateTime.now(fiZoneID)) && hasBeenUpdatedSuccessfullyYesterday())));
+
+        final var measureButton = new Button("Measure footprint", e -> showFootprint());
+        final var deliveryHealthButton = new Button("Push delivery health", e -> showDeliveryHealth());
+        final var refreshJobsButton = new Button("Refresh jobs", e -> showRefreshJobs());
+        add(measureButton, footprint, deliveryHealthButton, deliveryHealth, refreshJobsButton, refreshJobs);
+    }
+
+    @Override
+    public void beforeEnter(BeforeEnterEvent event) {
+        final var token = event.getLocation().getQueryParameters().getParameters().getOrDefault("token", List.of()).stream().findFirst().orElse("");
+        if (adminToken.isEmpty() || !MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            event.rerouteToError(NotFoundException.class);
+        }
+    }
+
+    private void showFootprint() {
+        final var report = footprintService.createReport();
+        footprint.removeAll();
+        footprint.add(new Span("Version %s, %d sessions of which %d sampled, view budget %d kB".formatted(report.version(), report.sessions(), report.sampledSessions(), report.viewBudgetBytes() / 1024)));
+        footprint.add(new H3("Global caches"));
+        for (FootprintService.CacheFootprint cache : report.caches()) {
+            footprint.add(createRow(cache.name(), "%d kB, %d objects".formatted(cache.bytes() / 1024, cache.objects()), false));
+        }
+        footprint.add(new H3("Views"));
+        for (FootprintService.ViewFootprint view : report.views()) {
+            footprint.add(createRow(view.view(), "average %d kB, max %d kB, %d samples".formatted(view.averageBytes() / 1024, view.maxBytes() / 1024, view.samples()), view.overBudget()));
+        }
+    }
+
+    private void showDeliveryHealth() {
+        final var health = notificationService.getDeliveryHealth();
+        final var metrics = health.pushMetrics();
+        deliveryHealth.removeAll();
+        deliveryHealth.add(createRow("Active subscriptions", String.valueOf(health.activeSubscriptions()), false));
+        deliveryHealth.add(createRow("Removed expired subscriptions", String.valueOf(health.removedSubscriptions()), false));
+        deliveryHealth.add(createRow("Planned notifications", String.valueOf(health.planned()), false));
+        deliveryHealth.add(createRow("Latest hour", health.latestHour().toString(), false));
+        deliveryHealth.add(createRow("Expired in the latest hour", "%.1f %%".formatted(health.deadRatio() * 100), health.deadRatio() > 0.1));
+        deliveryHealth.add(createRow("Sends by status", metrics.statusCodes().toString(), false));
+        deliveryHealth.add(createRow("Latency", "average %.0f ms, max %d ms".formatted(metrics.averageLatencyMillis(), metrics.maxLatencyMillis()), false));
+    }
+
+    private void showRefreshJobs() {
+        refreshJobs.removeAll();
+        for (RefreshJobs.JobStatus job : refreshOrchestrator.getStatus()) {
+            final var schedule = job.cron() != null ? "next " + job.nextRun() : "after " + String.join(", ", job.after());
+            final var state = job.running() ? "running" : job.isFailing() ? "failing: " + job.lastError() : "last success " + job.lastSuccess();
+            final var row = createRow(job.name(), "%s, %s, %d runs, %d failures, %d skipped, last %d ms, average %.0f ms".formatted(schedule, state,
+                    job.runs(), job.failures(), job.skipped(), job.lastDurationMillis(), job.averageDurationMillis()), job.isFailing());
+            row.add(new Button("Run", e -> {
+                refreshOrchestrator.trigger(job.name());
+                showRefreshJobs();
+            }));
+            refreshJobs.add(row);
+        }
+    }
+
+    private static Div createRow(String name, String value, boolean warning) {
+        final var row = new Div(new Span(name), new Span(value));
+        row.addClassNames(LumoUtility.Display.FLEX, LumoUtility.JustifyContent.BETWEEN, LumoUtility.Gap.MEDIUM);
+        if (warning) {
+            row.addClassNames(LumoUtility.TextColor.ERROR);
+        }
+        return row;
     }
 
 }
@@ -15,6 +15,7 @@ import com.vaadin.flow.theme.lumo.LumoUtility;
 import com.vesanieminen.froniusvisualizer.components.BarChartTemplateTimo;
 import com.vesanieminen.froniusvisualizer.components.DoubleLabel;
 import com.vesanieminen.froniusvisualizer.components.MaterialIcon;
+import com.vesanieminen.froniusvisualizer.services.DaySummaryIndex;
 import com.vesanieminen.froniusvisualizer.services.model.Plotline;
 
 import java.text.NumberFormat;
@@ -23,22 +24,12 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.time.format.TextStyle;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static com.vesanieminen.froniusvisualizer.services.NordpoolSpotService.getDateOfLatestFullDayData;
-import static com.vesanieminen.froniusvisualizer.services.NordpoolSpotService.getLatest7DaysList;
-import static com.vesanieminen.froniusvisualizer.services.NordpoolSpotService.getLatest7DaysMap;
-import static com.vesanieminen.froniusvisualizer.util.Utils.calculateAverageOfDay;
-import static com.vesanieminen.froniusvisualizer.util.Utils.calculateCheapest3HoursOfDay;
-import static com.vesanieminen.froniusvisualizer.util.Utils.calculateMaximumOfDay;
-import static com.vesanieminen.froniusvisualizer.util.Utils.calculateMinimumOfDay;
-import static com.vesanieminen.froniusvisualizer.util.Utils.calculateSpotAveragePriceOfMonth;
 import static com.vesanieminen.froniusvisualizer.util.Utils.fiLocale;
 import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
-import static com.vesanieminen.froniusvisualizer.util.Utils.getCombinedSpotData;
 import static com.vesanieminen.froniusvisualizer.util.Utils.getNumberFormat;
 import static com.vesanieminen.froniusvisualizer.views.MainLayout.URL_SUFFIX;
 
@@ -143,10 +134,8 @@ public class ChartTemplateViewForTimo extends Main {
     }
 
     private void selectDate(LocalDateTime selectedDay) {
-        final var beginning = selectedDay.atZone(fiZoneID).truncatedTo(ChronoUnit.DAYS).toInstant().toEpochMilli();
-        final var end = selectedDay.atZone(fiZoneID).truncatedTo(ChronoUnit.DAYS).plusDays(1).toInstant().toEpochMilli();
-        var data = getLatest7DaysList().stream().filter(item -> beginning <= item.time && item.time <= end).collect(Collectors.toList());
-        barChartTemplateTimo.setNordpoolDataList(data);
+        final var summary = DaySummaryIndex.get(selectedDay.toLocalDate());
+        barChartTemplateTimo.setNordpoolDataList(summary != null ? summary.prices() : List.of());
 
         updateLabels(selectedDay);
         updateButtonVisibility();
@@ -160,9 +149,12 @@ public class ChartTemplateViewForTimo extends Main {
         } else {
             dayH2.setText("%s".formatted(day));
         }
-        final var combinedSpotData = getCombinedSpotData();
-        averageTodayLabel.setTitleBottom(numberFormat.format(calculateAverageOfDay(selectedDay.toLocalDate(), combinedSpotData)) + " " + getTranslation("c/kWh"));
-        final var monthAverage = calculateSpotAveragePriceOfMonth(selectedDay.toLocalDate(), combinedSpotData);
+        final var summary = DaySummaryIndex.get(selectedDay.toLocalDate());
+        if (summary == null) {
+            return;
+        }
+        averageTodayLabel.setTitleBottom(numberFormat.format(summary.average()) + " " + getTranslation("c/kWh"));
+        final var monthAverage = summary.monthAverageToDate();
         if (showTheMonthlyAverageLineCheckbox.getValue()) {
             barChartTemplateTimo.setAverage(monthAverage);
             final var plotlines = List.of(new Plotline("average-yellow", monthAverage));
@@ -172,10 +164,14 @@ public class ChartTemplateViewForTimo extends Main {
             barChartTemplateTimo.setPlotline(new ArrayList<>());
         }
         averageThisMonthLabel.setTitleBottom(numberFormat.format(monthAverage) + " " + getTranslation("c/kWh"));
-        final var min = decimalFormat.format(calculateMinimumOfDay(selectedDay.toLocalDate(), combinedSpotData));
-        final var max = decimalFormat.format(calculateMaximumOfDay(selectedDay.toLocalDate(), combinedSpotData));
+        final var min = decimalFormat.format(summary.min());
+        final var max = decimalFormat.format(summary.max());
         lowestHighestToday.setTitleBottom(min + " / " + max);
-        final var cheapestHours = calculateCheapest3HoursOfDay(selectedDay.toLocalDate(), getLatest7DaysMap());
+        final var cheapestHours = summary.cheapestHours();
+        if (cheapestHours == null) {
+            cheapestPeriod.setTitleBottom("");
+            return;
+        }
         final var from = cheapestHours.from().atZone(fiZoneID).getHour();
         final var to = cheapestHours.to().atZone(fiZoneID).getHour() + 1;
         cheapestPeriod.setTitleBottom("%s:00 - %s:00, ".formatted(from, to) + getTranslation("avg.") + " " + numberFormat.format(cheapestHours.averagePrice()));
@@ -6,10 +6,9 @@ import com.vaadin.flow.component.charts.Chart;
 import com.vaadin.flow.component.charts.model.AxisType;
 import com.vaadin.flow.component.charts.model.ChartType;
 import com.vaadin.flow.component.charts.model.Configuration;
-import com.vaadin.flow.component.charts.model.DataSeries;
-import com.vaadin.flow.component.charts.model.DataSeriesItem;
 import com.vaadin.flow.component.charts.model.DateTimeLabelFormats;
 import com.vaadin.flow.component.charts.model.Labels;
+import com.vaadin.flow.component.charts.model.ListSeries;
 import com.vaadin.flow.component.charts.model.Marker;
 import com.vaadin.flow.component.charts.model.PlotLine;
 import com.vaadin.flow.component.charts.model.PlotOptionsLine;
@@ -32,48 +31,38 @@ import com.vaadin.flow.router.BeforeEvent;
 import com.vaadin.flow.router.HasUrlParameter;
 import com.vaadin.flow.router.OptionalParameter;
 import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.QueryParameters;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.router.RouteConfiguration;
 import com.vaadin.flow.theme.lumo.LumoUtility;
 import com.vesanieminen.froniusvisualizer.components.DoubleLabel;
+import com.vesanieminen.froniusvisualizer.services.ChartSeriesCache;
+import com.vesanieminen.froniusvisualizer.services.DataCache;
 import com.vesanieminen.froniusvisualizer.services.FingridService;
+import com.vesanieminen.froniusvisualizer.services.FingridService.RealtimeType;
 import com.vesanieminen.froniusvisualizer.services.FmiService;
 import com.vesanieminen.froniusvisualizer.services.NordpoolSpotService;
+import com.vesanieminen.froniusvisualizer.services.PriceStore;
 import com.vesanieminen.froniusvisualizer.services.SpotHintaService;
-import com.vesanieminen.froniusvisualizer.services.model.FingridLiteResponse;
+import com.vesanieminen.froniusvisualizer.services.ZonePriceService;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
 import com.vesanieminen.froniusvisualizer.services.model.FingridRealtimeResponse;
-import com.vesanieminen.froniusvisualizer.services.model.FmiObservationResponse;
-import com.vesanieminen.froniusvisualizer.services.model.FmiObservationResponse.FmiObservation;
-import com.vesanieminen.froniusvisualizer.services.model.NordpoolResponse;
-import com.vesanieminen.froniusvisualizer.services.model.SpotHintaResponse;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.text.ParseException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-
-import static com.vesanieminen.froniusvisualizer.services.FingridService.fingridDataUpdated;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.calculateSpotAveragePriceThisMonth;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.calculateSpotAveragePriceThisMonthWithoutVAT;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.calculateSpotAveragePriceThisYear;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.calculateSpotAveragePriceThisYearWithoutVAT;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.calculateSpotAveragePriceToday;
-import static com.vesanieminen.froniusvisualizer.services.PriceCalculatorService.calculateSpotAveragePriceTodayWithoutVAT;
+import java.util.Map;
+
 import static com.vesanieminen.froniusvisualizer.util.Utils.convertNordpoolLocalDateTimeToFinnish;
-import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
 import static com.vesanieminen.froniusvisualizer.util.Utils.format;
 import static com.vesanieminen.froniusvisualizer.util.Utils.getCurrentInstantHourPrecisionFinnishZone;
 import static com.vesanieminen.froniusvisualizer.util.Utils.getCurrentTimeWithHourPrecision;
 import static com.vesanieminen.froniusvisualizer.util.Utils.getNumberFormat;
-import static com.vesanieminen.froniusvisualizer.util.Utils.getVAT;
-import static com.vesanieminen.froniusvisualizer.util.Utils.isDaylightSavingsInFinland;
-import static com.vesanieminen.froniusvisualizer.util.Utils.nordpoolZoneID;
-import static com.vesanieminen.froniusvisualizer.util.Utils.numberFormat;
 import static com.vesanieminen.froniusvisualizer.views.MainLayout.URL_SUFFIX;
 
 @PageTitle("Chart" + URL_SUFFIX)
@@ -84,7 +73,6 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
     private final DoubleLabel lowestAndHighest;
     private final DoubleLabel averagePrice7Days;
     private final DoubleLabel nextPrice;
-    private final String fiElectricityPriceTitle;
     private final String hydroPowerProductionTitle;
     private final String windPowerProductionTitle;
     private final String nuclearPowerProductionTitle;
@@ -93,16 +81,16 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
     private final String importExportTitle;
     private final String totalRenewablesTitle;
     private static final String vatDisabled = "vat=off";
-    public static final Double vat24Value = 1.24d;
-    public static final Double vat10Value = 1.10d;
+    private static final String zoneParameter = "zone";
     private boolean hasVat = true;
+    private BiddingZone zone = BiddingZone.FI;
     private boolean isTouchDevice = false;
+    private static final Duration staleDataAge = Duration.ofHours(3);
     private boolean isInitialRender = true;
     private int screenWidth;
 
     public NordpoolspotView() {
         addClassNames(LumoUtility.Display.FLEX, LumoUtility.FlexDirection.COLUMN, LumoUtility.AlignItems.CENTER);
-        fiElectricityPriceTitle = getTranslation("FI electricity price");
         hydroPowerProductionTitle = getTranslation("Hydro production");
         windPowerProductionTitle = getTranslation("Wind production");
         nuclearPowerProductionTitle = getTranslation("Nuclear production");
@@ -123,6 +111,8 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         } else {
             this.hasVat = true;
         }
+        final var zoneValues = event.getLocation().getQueryParameters().getParameters().getOrDefault(zoneParameter, List.of());
+        this.zone = BiddingZone.fromString(zoneValues.isEmpty() ? null : zoneValues.get(0));
         if (!isInitialRender) {
             renderView();
         }
@@ -170,32 +160,21 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
 
     private Chart renderView() {
         isInitialRender = false;
-        NordpoolResponse nordpoolResponse;
-        FingridRealtimeResponse fingridResponse;
-        List<FingridLiteResponse> windEstimateResponses;
-        List<FingridLiteResponse> productionEstimateResponses;
-        List<FingridLiteResponse> consumptionEstimateResponses;
-        List<SpotHintaResponse> temperatureForecastList;
-        FmiObservationResponse temperatureObservations;
-        try {
-            nordpoolResponse = NordpoolSpotService.getLatest7Days();
-            fingridResponse = FingridService.getLatest7Days();
-            windEstimateResponses = FingridService.getWindEstimate();
-            productionEstimateResponses = FingridService.getProductionEstimate();
-            consumptionEstimateResponses = FingridService.getConsumptionEstimate();
-            temperatureForecastList = SpotHintaService.getLatest();
-            temperatureObservations = FmiService.getObservations();
-        } catch (URISyntaxException | IOException | InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        // All of these return the last good snapshot immediately, upstream refreshes happen in the background
+        final var nordpoolResponse = NordpoolSpotService.getLatest7Days();
+        final var fingridResponse = FingridService.getLatest7Days();
 
         removeAll();
         createMenuLayout();
         final NumberFormat numberFormat = getNumberFormat(getLocale(), 2);
         numberFormat.setMinimumFractionDigits(2);
-        final var averageThisMonthLabel = new DoubleLabel(getTranslation("Average this month"), numberFormat.format(hasVat ? calculateSpotAveragePriceThisMonth() : calculateSpotAveragePriceThisMonthWithoutVAT()));
-        final var averageThisYearLabel = new DoubleLabel(getTranslation("Average this year"), numberFormat.format(hasVat ? calculateSpotAveragePriceThisYear() : calculateSpotAveragePriceThisYearWithoutVAT()));
-        final var averageTodayLabel = new DoubleLabel(getTranslation("Day's average"), numberFormat.format(hasVat ? calculateSpotAveragePriceToday() : calculateSpotAveragePriceTodayWithoutVAT()));
+        final var prices = PriceStore.get();
+        final var today = ZonedDateTime.now(zone.zoneId).truncatedTo(ChronoUnit.DAYS);
+        final var startOfMonth = today.withDayOfMonth(1);
+        final var startOfYear = today.withDayOfYear(1);
+        final var averageThisMonthLabel = new DoubleLabel(getTranslation("Average this month"), numberFormat.format(prices.average(zone, startOfMonth.toInstant(), startOfMonth.plusMonths(1).toInstant(), hasVat)));
+        final var averageThisYearLabel = new DoubleLabel(getTranslation("Average this year"), numberFormat.format(prices.average(zone, startOfYear.toInstant(), startOfYear.plusYears(1).toInstant(), hasVat)));
+        final var averageTodayLabel = new DoubleLabel(getTranslation("Day's average"), numberFormat.format(prices.average(zone, today.toInstant(), today.plusDays(1).toInstant(), hasVat)));
         var pricesLayout = new Div(priceNow, nextPrice, averageTodayLabel, averagePrice7Days, averageThisMonthLabel, averageThisYearLabel, lowestAndHighest);
         pricesLayout.addClassNames(LumoUtility.Display.FLEX, LumoUtility.FlexWrap.WRAP, LumoUtility.Width.FULL/*, LumoUtility.BorderRadius.LARGE, LumoUtility.Border.ALL, LumoUtility.BorderColor.CONTRAST_10*/);
         add(pricesLayout);
@@ -203,7 +182,7 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         var chart = new Chart(ChartType.LINE);
         final var time = new Time();
         time.setUseUTC(false);
-        time.setTimezoneOffset((isDaylightSavingsInFinland() ? -3 : -2) * 60);
+        time.setTimezoneOffset(-zone.zoneId.getRules().getOffset(Instant.now()).getTotalSeconds() / 60);
         chart.getConfiguration().setTime(time);
         chart.setTimeline(true);
         chart.getConfiguration().getNavigator().setEnabled(false);
@@ -218,38 +197,45 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         createSpotPriceYAxis(chart);
         createTemperatureYAxis(chart);
 
-        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+        // The same 7 day window as the Nordpool page: the last 6 days and tomorrow when it is available
+        final var spotPrices = ChartSeriesCache.getPriceSeries(zone, hasVat);
 
-        if (fingridResponse != null) {
+        if (!zone.hasFinnishGridData) {
+            final var spotPriceDataSeries = createSpotPriceDataSeries(spotPrices, chart, new ArrayList<>());
+            configureChartTooltips(chart, spotPriceDataSeries);
+        } else if (fingridResponse != null) {
             final var seriesList = new ArrayList<Series>();
-            createDataSeries(fingridResponse.HydroPower, hydroPowerProductionTitle, false, seriesList);
-            createDataSeries(fingridResponse.WindPower, windPowerProductionTitle, true, seriesList);
-            createDataSeries(fingridResponse.NuclearPower, nuclearPowerProductionTitle, false, seriesList);
-            createDataSeries(fingridResponse.SolarPower, solarPowerProductionTitle, false, seriesList);
-            createDataSeries(fingridResponse.Consumption, consumptionTitle, false, seriesList);
-            createDataSeries(fingridResponse.NetImportExport, importExportTitle, false, seriesList);
-            final var windEstimateDataSeries = createEstimateDataSeries(windEstimateResponses, getTranslation("Wind production estimate"), true, seriesList);
-            // TODO: add these back in:
-            //final var consumptionEstimateDataSeries = createEstimateDataSeries(consumptionEstimateResponses, getTranslation("Consumption estimate"), false, seriesList);
-            //final var productionEstimateDataSeries = createEstimateDataSeries(productionEstimateResponses, getTranslation("Production estimate"), false, seriesList);
-            createRenewablesDataSeries(fingridResponse, seriesList);
-
-            if (windEstimateDataSeries == null) {
+            final var gridSeries = ChartSeriesCache.getGridSeries();
+            seriesList.add(createListSeries(gridSeries.production().get(RealtimeType.HYDRO), hydroPowerProductionTitle, false));
+            seriesList.add(createListSeries(gridSeries.production().get(RealtimeType.WIND), windPowerProductionTitle, true));
+            seriesList.add(createListSeries(gridSeries.production().get(RealtimeType.NUCLEAR), nuclearPowerProductionTitle, false));
+            seriesList.add(createListSeries(gridSeries.production().get(RealtimeType.SOLAR), solarPowerProductionTitle, false));
+            seriesList.add(createListSeries(gridSeries.production().get(RealtimeType.CONSUMPTION), consumptionTitle, false));
+            seriesList.add(createListSeries(gridSeries.production().get(RealtimeType.NET_IMPORT_EXPORT), importExportTitle, false));
+            final var windEstimateSeries = ChartSeriesCache.getWindEstimateSeries();
+            // TODO: add the consumption and production estimates back in
+            if (windEstimateSeries != null) {
+                seriesList.add(createListSeries(windEstimateSeries, getTranslation("Wind production estimate"), true));
+            }
+            seriesList.add(createListSeries(gridSeries.renewables(), totalRenewablesTitle, false));
+
+            if (windEstimateSeries == null) {
                 add(new Span(getTranslation("Fingrid not responding for estimate data")));
             }
-            final var spotPriceDataSeries = createSpotPriceDataSeries(nordpoolResponse, chart, dateTimeFormatter, seriesList);
+            final var spotPriceDataSeries = createSpotPriceDataSeries(spotPrices, chart, seriesList);
             configureChartTooltips(chart, spotPriceDataSeries);
             //setNetToday(fingridResponse, df, netToday);
         } else {
             add(new Span(getTranslation("Fingrid API is down currently ;~(")));
-            final var spotPriceDataSeries = createSpotPriceDataSeries(nordpoolResponse, chart, dateTimeFormatter, new ArrayList<>());
+            final var spotPriceDataSeries = createSpotPriceDataSeries(spotPrices, chart, new ArrayList<>());
             configureChartTooltips(chart, spotPriceDataSeries);
         }
 
-        var temperatureDataSeries = createTemperatureDataSeries(temperatureForecastList, temperatureObservations, getTranslation("chart.temperature.series"));
-        chart.getConfiguration().addSeries(temperatureDataSeries);
-        temperatureDataSeries.setVisible(false);
-        configureTemperatureDataSeries(temperatureDataSeries);
+        if (zone.hasFinnishGridData) {
+            final var temperatureDataSeries = createListSeries(ChartSeriesCache.getTemperatureSeries(), getTranslation("chart.temperature.series"), false);
+            chart.getConfiguration().addSeries(temperatureDataSeries);
+            configureTemperatureDataSeries(temperatureDataSeries);
+        }
 
         final var rangeSelector = new RangeSelector();
         rangeSelector.setButtons(
@@ -269,12 +255,13 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
 
         add(chart);
 
-        if (nordpoolResponse.isValid()) {
+        if (zone.hasFinnishGridData && nordpoolResponse != null && nordpoolResponse.isValid()) {
             final var spotDataUpdatedTime = convertNordpoolLocalDateTimeToFinnish(nordpoolResponse.data.DateUpdated);
             final var spotDataUpdated = format(spotDataUpdatedTime, getLocale());
             final var spotDataUpdatedSpan = new Span(getTranslation("price.data.updated") + ": " + spotDataUpdated + ", ");
             spotDataUpdatedSpan.addClassNames(LumoUtility.FontSize.SMALL, LumoUtility.TextColor.SECONDARY);
 
+            final var fingridDataUpdated = FingridService.getRealtimeCache().getUpdated();
             final var fingridDataUpdatedFormatted = fingridDataUpdated != null ? format(fingridDataUpdated, getLocale()) : "";
             final var fingridDataUpdatedSpan = new Span(getTranslation("fingrid.data.updated") + ": " + fingridDataUpdatedFormatted);
             fingridDataUpdatedSpan.addClassNames(LumoUtility.FontSize.SMALL, LumoUtility.TextColor.SECONDARY);
@@ -282,6 +269,7 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
             div.addClassNames(LumoUtility.Display.FLEX, LumoUtility.FlexWrap.WRAP, LumoUtility.Gap.Column.XSMALL, LumoUtility.Margin.Horizontal.MEDIUM, LumoUtility.JustifyContent.CENTER);
             add(div);
         }
+        addStaleDataNotices();
 
         final Span fingridFooter = createFingridLicenseSpan();
         add(fingridFooter);
@@ -289,9 +277,26 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         return chart;
     }
 
-    private static void configureTemperatureDataSeries(DataSeries temperatureDataSeries) {
+    /**
+     * Tells the user when some of the shown data is served from an old snapshot because the upstream is slow or down.
+     */
+    private void addStaleDataNotices() {
+        final List<DataCache<?>> caches = zone.hasFinnishGridData
+                ? List.of(NordpoolSpotService.getCache(), FingridService.getRealtimeCache(), FingridService.getWindEstimateCache(), SpotHintaService.getCache(), FmiService.getCache())
+                : List.of(ZonePriceService.getCaches().get(zone));
+        for (DataCache<?> cache : caches) {
+            if (cache.isCircuitOpen() || (cache.hasValue() && cache.isOlderThan(staleDataAge))) {
+                final var age = cache.getAge().map(Duration::toMinutes).orElse(0L);
+                final var span = new Span(getTranslation("data.stale", cache.getName(), age));
+                span.addClassNames(LumoUtility.FontSize.SMALL, LumoUtility.TextColor.ERROR);
+                add(span);
+            }
+        }
+    }
+
+    private static void configureTemperatureDataSeries(ListSeries temperatureDataSeries) {
         temperatureDataSeries.setyAxis(2);
-        final var plotOptionsLineSpot = new PlotOptionsLine();
+        final var plotOptionsLineSpot = (PlotOptionsLine) temperatureDataSeries.getPlotOptions();
         plotOptionsLineSpot.setStickyTracking(true);
         plotOptionsLineSpot.setMarker(new Marker(false));
         final var seriesTooltipSpot = new SeriesTooltip();
@@ -300,7 +305,6 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         final var dateTimeLabelFormats = new DateTimeLabelFormats();
         seriesTooltipSpot.setDateTimeLabelFormats(dateTimeLabelFormats);
         plotOptionsLineSpot.setTooltip(seriesTooltipSpot);
-        temperatureDataSeries.setPlotOptions(plotOptionsLineSpot);
     }
 
     private Span createFingridLicenseSpan() {
@@ -356,8 +360,8 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         chart.getConfiguration().addxAxis(xAxis);
     }
 
-    private void configureChartTooltips(Chart chart, DataSeries spotPriceDataSeries) {
-        final var plotOptionsLineSpot = new PlotOptionsLine();
+    private void configureChartTooltips(Chart chart, ListSeries spotPriceDataSeries) {
+        final var plotOptionsLineSpot = (PlotOptionsLine) spotPriceDataSeries.getPlotOptions();
         plotOptionsLineSpot.setAnimation(false);
         plotOptionsLineSpot.setStickyTracking(true);
         plotOptionsLineSpot.setMarker(new Marker(false));
@@ -367,7 +371,6 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         final var dateTimeLabelFormats = new DateTimeLabelFormats();
         seriesTooltipSpot.setDateTimeLabelFormats(dateTimeLabelFormats);
         plotOptionsLineSpot.setTooltip(seriesTooltipSpot);
-        spotPriceDataSeries.setPlotOptions(plotOptionsLineSpot);
 
         final var plotOptionsLine = new PlotOptionsLine();
         plotOptionsLine.setAnimation(false);
@@ -390,77 +393,18 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         chart.getConfiguration().getxAxis().addPlotLine(plotLine);
     }
 
-    private void createDataSeries(List<FingridRealtimeResponse.Data> datasource, String title, boolean isVisible, List<Series> seriesList) {
-        final var dataSeries = new DataSeries(title);
-        dataSeries.setVisible(isVisible);
-        for (FingridRealtimeResponse.Data data : datasource) {
-            final var dataSeriesItem = new DataSeriesItem();
-            dataSeriesItem.setX(data.startTime.withMinute(0).toInstant());
-            dataSeriesItem.setY(data.value);
-            dataSeries.add(dataSeriesItem);
-        }
-        seriesList.add(dataSeries);
-    }
-
-    private void createRenewablesDataSeries(FingridRealtimeResponse fingridResponse, ArrayList<Series> seriesList) {
-        final var dataSeries = new DataSeries(totalRenewablesTitle);
-        dataSeries.setVisible(false);
-        for (int i = 0; i < fingridResponse.WindPower.size() && i < fingridResponse.HydroPower.size() && i < fingridResponse.SolarPower.size(); ++i) {
-            final var value = fingridResponse.WindPower.get(i).value + fingridResponse.HydroPower.get(i).value + fingridResponse.SolarPower.get(i).value;
-            final var dataSeriesItem = new DataSeriesItem();
-            dataSeriesItem.setX(fingridResponse.WindPower.get(i).startTime.withMinute(0).toInstant());
-            dataSeriesItem.setY(value);
-            dataSeries.add(dataSeriesItem);
-        }
-        seriesList.add(dataSeries);
-    }
-
-    private DataSeries createEstimateDataSeries(List<FingridLiteResponse> dataSource, String title, boolean isVisible, List<Series> seriesList) {
-        final var dataSeries = new DataSeries(title);
-        dataSeries.setVisible(isVisible);
-        if (dataSource == null) {
-            return null;
-        }
-        for (FingridLiteResponse response : dataSource) {
-            final var dataSeriesItem = new DataSeriesItem();
-            if (response.startTime == null) {
-                continue;
-            }
-            dataSeriesItem.setX(response.startTime.toInstant());
-            dataSeriesItem.setY(response.value);
-            dataSeries.add(dataSeriesItem);
-        }
-        seriesList.add(dataSeries);
-        return dataSeries;
-    }
-
-
-    private DataSeries createTemperatureDataSeries(List<SpotHintaResponse> spotHintadataSource, FmiObservationResponse fmiObservations, String title) {
-        final var dataSeries = new DataSeries(title);
-
-        if (fmiObservations != null) {
-            for (FmiObservation observation : fmiObservations.getObservations()) {
-                final var dataSeriesItem = new DataSeriesItem();
-                var timestamp = FmiService.parseFmiTimestamp(observation.getLocaltime(), observation.getLocaltz());
-                if (timestamp == null) {
-                    continue;
-                }
-                dataSeriesItem.setX(timestamp.toInstant());
-                dataSeriesItem.setY(observation.getTemperature());
-                dataSeries.add(dataSeriesItem);
-            }
-        }
-
-        if (spotHintadataSource != null) {
-            for (SpotHintaResponse response : spotHintadataSource) {
-                final var dataSeriesItem = new DataSeriesItem();
-                dataSeriesItem.setX(response.TimeStamp.toInstant());
-                dataSeriesItem.setY(response.Temperature);
-                dataSeries.add(dataSeriesItem);
-            }
-        }
-
-        return dataSeries;
+    /**
+     * Binds the shared data of {@link ChartSeriesCache} to a new series of this chart.
+     */
+    private static ListSeries createListSeries(ChartSeriesCache.ChartSeries chartSeries, String title, boolean isVisible) {
+        final var listSeries = new ListSeries(title, chartSeries.data());
+        listSeries.setVisible(isVisible);
+        final var plotOptions = new PlotOptionsLine();
+        plotOptions.setPointStart(chartSeries.pointStart());
+        plotOptions.setPointInterval(chartSeries.pointInterval());
+        plotOptions.setConnectNulls(true);
+        listSeries.setPlotOptions(plotOptions);
+        return listSeries;
     }
 
     public void setNetToday(FingridRealtimeResponse fingridResponse, DecimalFormat df, DoubleLabel netToday) {
@@ -493,75 +437,60 @@ public class NordpoolspotView extends Main implements HasUrlParameter<String> {
         vatComboBox.setItems(VAT.values());
         vatComboBox.setValue(hasVat ? VAT.VAT : VAT.VAT0);
         vatComboBox.setItemLabelGenerator(item -> getTranslation(item.getVatName()));
-        final var menuLayout = new FlexLayout(vatComboBox);
-        menuLayout.addClassNames(LumoUtility.Display.FLEX, LumoUtility.Width.FULL);
+        final var zoneComboBox = new ComboBox<BiddingZone>();
+        zoneComboBox.addClassNames(LumoUtility.Padding.NONE);
+        zoneComboBox.setMinWidth(8, Unit.EM);
+        zoneComboBox.setItems(BiddingZone.values());
+        zoneComboBox.setValue(zone);
+        zoneComboBox.setItemLabelGenerator(BiddingZone::name);
+        final var menuLayout = new FlexLayout(vatComboBox, zoneComboBox);
+        menuLayout.addClassNames(LumoUtility.Display.FLEX, LumoUtility.Width.FULL, LumoUtility.Gap.SMALL);
         add(menuLayout);
         // Add event listeners
-        vatComboBox.addValueChangeListener(e -> getUI().ifPresent(ui -> {
-            switch (e.getValue()) {
-                case VAT -> ui.navigate(NordpoolspotView.class);
-                case VAT0 -> ui.navigate(NordpoolspotView.class, vatDisabled);
+        vatComboBox.addValueChangeListener(e -> navigate(e.getValue() == VAT.VAT, zone));
+        zoneComboBox.addValueChangeListener(e -> {
+            if (e.getValue() != null) {
+                navigate(hasVat, e.getValue());
             }
-        }));
+        });
     }
 
-    private DataSeries createSpotPriceDataSeries(NordpoolResponse nordpoolResponse, Chart chart, DateTimeFormatter dateTimeFormatter, ArrayList<Series> series) {
+    private void navigate(boolean vat, BiddingZone biddingZone) {
+        getUI().ifPresent(ui -> {
+            final var location = vat ? RouteConfiguration.forSessionScope().getUrl(NordpoolspotView.class) : RouteConfiguration.forSessionScope().getUrl(NordpoolspotView.class, vatDisabled);
+            final var queryParameters = biddingZone == BiddingZone.FI ? QueryParameters.empty() : QueryParameters.simple(Map.of(zoneParameter, biddingZone.name()));
+            ui.navigate(location, queryParameters);
+        });
+    }
+
+    private ListSeries createSpotPriceDataSeries(ChartSeriesCache.PriceSeries priceSeries, Chart chart, ArrayList<Series> series) {
+        final var spotPrices = priceSeries.prices();
         final NumberFormat decimalFormat = getNumberFormat(getLocale(), 2);
         decimalFormat.setMinimumFractionDigits(2);
-        var now = getCurrentTimeWithHourPrecision();
+        final var now = ZonedDateTime.now(zone.zoneId).truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli();
+        final var today = ZonedDateTime.now(zone.zoneId).toLocalDate();
         var highest = Double.MIN_VALUE;
         var lowest = Double.MAX_VALUE;
         var total = 0d;
-        var amount = 0;
-        final var dataSeries = new DataSeries(fiElectricityPriceTitle);
-        if (nordpoolResponse == null) {
-            return dataSeries;
-        }
-        final var rows = nordpoolResponse.data.Rows;
-        int columnIndex = 6;
-        while (columnIndex >= 0) {
-            for (NordpoolResponse.Row row : rows.subList(0, rows.size() - 6)) {
-                final var dataSeriesItem = new DataSeriesItem();
-                final var time = row.StartTime.toString().split("T")[1];
-                NordpoolResponse.Column column = row.Columns.get(columnIndex);
-                final var dateTimeString = column.Name + " " + time;
-                final var instant = LocalDateTime.parse(dateTimeString, dateTimeFormatter).atZone(nordpoolZoneID).toInstant();
-                dataSeriesItem.setX(instant);
-                final var localDateTime = LocalDateTime.ofInstant(instant, fiZoneID);
-                try {
-                    var y = 0.0d;
-                    if (hasVat) {
-                        y = numberFormat.parse(column.Value.replaceAll(" ", "")).doubleValue() * getVAT(instant) / 10;
-                    } else {
-                        y = numberFormat.parse(column.Value.replaceAll(" ", "")).doubleValue() / 10;
-                    }
-                    total += y;
-                    ++amount;
-                    dataSeriesItem.setY(y);
-                    if (Objects.equals(localDateTime, now)) {
-                        priceNow.setTitleBottom(decimalFormat.format(y));
-                    }
-                    if (Objects.equals(localDateTime, now.plusHours(1))) {
-                        nextPrice.setTitleBottom(decimalFormat.format(y));
-                    }
-                    if (localDateTime.getDayOfMonth() == now.getDayOfMonth()) {
-                        if (y > highest) {
-                            highest = y;
-                        }
-                        if (y < lowest) {
-                            lowest = y;
-                        }
-                    }
-                } catch (ParseException e) {
-                    // skip when the time is "-": changing from or to summer time.
-                    continue;
-                }
-                dataSeries.add(dataSeriesItem);
+        final var times = spotPrices.times();
+        final var values = spotPrices.values();
+        for (int i = 0; i < spotPrices.size(); ++i) {
+            final var y = values[i];
+            total += y;
+            if (times[i] == now) {
+                priceNow.setTitleBottom(decimalFormat.format(y));
+            }
+            if (times[i] == now + PriceStore.hourMillis) {
+                nextPrice.setTitleBottom(decimalFormat.format(y));
+            }
+            if (Instant.ofEpochMilli(times[i]).atZone(zone.zoneId).toLocalDate().equals(today)) {
+                highest = Math.max(highest, y);
+                lowest = Math.min(lowest, y);
             }
-            --columnIndex;
         }
         lowestAndHighest.setTitleBottom(decimalFormat.format(lowest) + " / " + decimalFormat.format(highest));
-        averagePrice7Days.setTitleBottom(decimalFormat.format(total / amount));
+        averagePrice7Days.setTitleBottom(decimalFormat.format(total / spotPrices.size()));
+        final var dataSeries = createListSeries(priceSeries.chart(), getTranslation("zone.electricity.price", zone.name()), true);
         series.add(0, dataSeries);
         chart.getConfiguration().setSeries(series);
         return dataSeries;
@@ -11,15 +11,19 @@ import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.confirmdialog.ConfirmDialog;
 import com.vaadin.flow.component.html.H1;
 import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.NumberField;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.shared.Registration;
 import com.vesanieminen.froniusvisualizer.components.appnav.LocalizedElementCollectionField;
 import com.vesanieminen.froniusvisualizer.services.NotificationService;
+import com.vesanieminen.froniusvisualizer.services.model.NotificationRuleType;
 import com.vesanieminen.froniusvisualizer.services.model.PriceNotification;
 import nl.martijndwars.webpush.Subscription;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.vaadin.firitin.components.select.VSelect;
+import org.vaadin.firitin.components.textfield.VIntegerField;
 import org.vaadin.firitin.components.textfield.VNumberField;
 import org.vaadin.firitin.components.textfield.VTextField;
 import org.vaadin.firitin.util.WebStorage;
@@ -36,17 +40,25 @@ public class NotificationsView extends VerticalLayout {
 
     public static class PriceNotificationEditor {
         Checkbox enabled = new Checkbox();
+        VSelect<NotificationRuleType> ruleType = new VSelect<NotificationRuleType>()
+                .withItems(NotificationRuleType.values())
+                .withItemLabelGenerator(type -> UI.getCurrent().getTranslation("notification.rule." + type.name()))
+                .withWidth("12em");
         NumberField price = new VNumberField().withWidth("5em");
         VSelect<Boolean> up = new VSelect<Boolean>()
                 .withItems(Boolean.TRUE, Boolean.FALSE)
                 .withItemLabelGenerator(b -> b ? "↗" : "↘︎")
                 .withWidth("5em");
-        // VIntegerField prewarn = new VIntegerField().withWidth("5em");
+        // The hours of the cheapest hours rule or the multiplier of the spike rule
+        NumberField param = new VNumberField().withWidth("5em");
+        // Minutes to warn before the hour
+        VIntegerField prewarn = new VIntegerField().withWidth("5em");
 //        VIntegerField timeout = new VIntegerField().withWidth("5em");
         VTextField extraMsg = new VTextField();
     }
 
     private List<PriceNotification> notifications;
+    private LocalizedElementCollectionField<PriceNotification> elementCollectionField;
 
     Button requestNotificationsBtn;
 
@@ -75,12 +87,20 @@ public class NotificationsView extends VerticalLayout {
     }
 
     private void save() {
-        service.saveNotifications(uid, notifications);
+        try {
+            notifications = service.saveNotifications(uid, notifications);
+        } catch (OptimisticLockingFailureException e) {
+            // Another device has saved the notifications meanwhile, show what it saved
+            Notification.show(getTranslation("view.notifications.conflict"));
+            notifications = service.listNotifications(uid);
+            elementCollectionField.setValue(notifications);
+            return;
+        }
         UI.getCurrent().navigate("");
     }
 
     private void bindData() {
-        final var elementCollectionField = new LocalizedElementCollectionField<>(PriceNotification.class, PriceNotificationEditor.class);
+        elementCollectionField = new LocalizedElementCollectionField<>(PriceNotification.class, PriceNotificationEditor.class);
 
         elementCollectionField.setValue(notifications);
 
@@ -1,33 +1,29 @@
 package com.vesanieminen.froniusvisualizer.views;
 
 import com.vaadin.flow.component.AttachEvent;
-import com.vaadin.flow.component.Component;
-import com.vaadin.flow.component.html.H2;
-import com.vaadin.flow.component.html.ListItem;
 import com.vaadin.flow.component.html.Main;
-import com.vaadin.flow.component.html.Span;
-import com.vaadin.flow.component.html.UnorderedList;
+import com.vaadin.flow.component.virtuallist.VirtualList;
+import com.vaadin.flow.data.renderer.LitRenderer;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.router.RouteAlias;
 import com.vaadin.flow.theme.lumo.LumoUtility;
-import com.vesanieminen.froniusvisualizer.components.Ping;
-import com.vesanieminen.froniusvisualizer.components.list.PriceListItem;
-import com.vesanieminen.froniusvisualizer.components.list.UnorderedPriceList;
 import com.vesanieminen.froniusvisualizer.services.model.NordpoolPrice;
+import com.vesanieminen.froniusvisualizer.util.css.Animate;
 import com.vesanieminen.froniusvisualizer.util.css.Background;
 import com.vesanieminen.froniusvisualizer.util.css.BorderColor;
-import com.vesanieminen.froniusvisualizer.util.css.Layout;
+import com.vesanieminen.froniusvisualizer.util.css.FontFamily;
+import com.vesanieminen.froniusvisualizer.util.css.Opacity;
 import com.vesanieminen.froniusvisualizer.util.css.Transform;
 import com.vesanieminen.froniusvisualizer.util.css.Transition;
 
 import java.text.NumberFormat;
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 import static com.vesanieminen.froniusvisualizer.services.NordpoolSpotService.getLatest7DaysList;
@@ -44,12 +40,47 @@ import static com.vesanieminen.froniusvisualizer.views.MainLayout.URL_SUFFIX;
 @RouteAlias(value = "price-list", layout = MainLayout.class)
 public class PriceListView extends Main {
 
+    private static final String dayClassNames = String.join(" ",
+            LumoUtility.Display.BLOCK,
+            LumoUtility.Background.BASE,
+            LumoUtility.Border.BOTTOM,
+            LumoUtility.BorderColor.CONTRAST_10,
+            LumoUtility.FontSize.XXLARGE,
+            LumoUtility.FontWeight.SEMIBOLD,
+            LumoUtility.Margin.Top.MEDIUM,
+            LumoUtility.Padding.SMALL
+    );
+    private static final String itemClassNames = String.join(" ",
+            LumoUtility.Border.BOTTOM,
+            LumoUtility.Display.FLEX,
+            LumoUtility.JustifyContent.BETWEEN,
+            LumoUtility.Padding.SMALL
+    );
+    // The rows are rendered on the client from this template, only the visible rows are sent
+    private static final String rowTemplate = """
+            <div class="${item.rowClass}">
+                <span ?hidden="${!item.day}">${item.day}</span>
+                <span class="${item.current ? item.textClass : ''}" ?hidden="${!!item.day}">${item.time}
+                    <span class="%s" aria-label="${item.currentLabel}" title="${item.currentLabel}" style="display: ${item.current ? 'inline-flex' : 'none'}; width: 8px; height: 8px;">
+                        <span class="%s" style="width: 100%%; height: 100%%;"></span>
+                        <span class="${item.pingClass} %s" style="width: 100%%; height: 100%%;"></span>
+                    </span>
+                </span>
+                <span class="${item.textClass}" ?hidden="${!!item.day}">${item.price}</span>
+            </div>
+            """.formatted(
+            LumoUtility.Position.RELATIVE,
+            String.join(" ", Animate.PING, LumoUtility.Background.PRIMARY_50, LumoUtility.BorderRadius.LARGE, LumoUtility.Display.FLEX, Opacity._75, LumoUtility.Position.ABSOLUTE),
+            String.join(" ", LumoUtility.BorderRadius.LARGE, LumoUtility.Display.FLEX, LumoUtility.Position.RELATIVE)
+    );
+
     private final double expensiveLimit;
     private final double cheapLimit;
+    private boolean isDesktop;
 
     public PriceListView() {
-        addClassNames(LumoUtility.Overflow.AUTO, LumoUtility.Padding.Horizontal.SMALL);
-        // Set height to correctly position sticky dates
+        addClassNames(LumoUtility.Padding.Horizontal.SMALL);
+        // Set height so that the virtual list fills the view
         // Added fix for iOS Safari header height that changes when scrolling
         setHeight("var(--fullscreen-height-list)");
         expensiveLimit = calculateSpotAveragePriceThisMonth();
@@ -61,16 +92,14 @@ public class PriceListView extends Main {
         renderListView(attachEvent);
     }
 
-    private void setPriceTextColor(double price, Span span) {
+    private String getPriceTextColor(double price) {
         if (price <= cheapLimit) {
-            span.addClassName(LumoUtility.TextColor.SUCCESS);
-        }
-        if (price > cheapLimit && price < expensiveLimit) {
-            span.addClassName(LumoUtility.TextColor.PRIMARY);
+            return LumoUtility.TextColor.SUCCESS;
         }
-        if (price >= expensiveLimit) {
-            span.addClassName(LumoUtility.TextColor.ERROR);
+        if (price < expensiveLimit) {
+            return LumoUtility.TextColor.PRIMARY;
         }
+        return LumoUtility.TextColor.ERROR;
     }
 
     private String getPriceBackgroundColor(double price) {
@@ -118,118 +147,83 @@ public class PriceListView extends Main {
         if (data.isEmpty()) {
             return;
         }
-        addRows(data, attachEvent);
+        final var rows = createRows(data, attachEvent.getUI().getLocale());
+        final var list = new VirtualList<Row>();
+        list.addClassNames(FontFamily.MONO, LumoUtility.Margin.Horizontal.AUTO, LumoUtility.MaxWidth.SCREEN_SMALL);
+        list.setHeightFull();
+        list.setItems(rows);
+        list.setRenderer(LitRenderer.<Row>of(rowTemplate)
+                .withProperty("day", Row::day)
+                .withProperty("time", Row::time)
+                .withProperty("price", Row::price)
+                .withProperty("current", Row::isCurrent)
+                .withProperty("currentLabel", row -> row.isCurrent() ? getTranslation("Current") : "")
+                .withProperty("pingClass", row -> row.isCurrent() ? getPriceBackgroundColor(row.vatPrice()) : "")
+                .withProperty("rowClass", this::getRowClassNames)
+                .withProperty("textClass", row -> row.day() != null ? "" : getPriceTextColor(row.vatPrice())));
+        add(list);
+        // Leave the two previous hours visible above the current one
+        rows.stream().filter(Row::isCurrent).findFirst().ifPresent(current -> list.scrollToIndex(Math.max(0, rows.indexOf(current) - 2)));
+        // Fetched once per UI, the hover effect is only added for desktop browsers
+        attachEvent.getUI().getPage().retrieveExtendedClientDetails(details -> {
+            if (!details.isTouchDevice()) {
+                isDesktop = true;
+                list.getDataProvider().refreshAll();
+            }
+        });
     }
 
-    private void addRows(List<NordpoolPrice> data, AttachEvent attachEvent) {
-        var locale = attachEvent.getUI().getLocale();
-        Collection<Component> containerList = new ArrayList<>();
-        ListItem currentItem = null;
+    /**
+     * A day header or an hour of the list.
+     */
+    private record Row(String day, String time, String price, double vatPrice, boolean isCurrent) {
+    }
+
+    private List<Row> createRows(List<NordpoolPrice> data, Locale locale) {
+        final var dayFormatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.LONG).withLocale(locale);
+        final var timeFormatter = DateTimeFormatter.ofPattern("HH:mm").withLocale(locale);
+        final NumberFormat numberFormat = getNumberFormat(getLocale(), 2);
+        numberFormat.setMinimumFractionDigits(2);
         final var nowLocalDateTime = getCurrentLocalDateTimeHourPrecisionFinnishZone();
-        H2 day = null;
-        UnorderedList list = null;
-        Span daySpan;
-        var currentDayTime = data.get(0).timeInstant();
-        boolean first = true;
+        final var rows = new ArrayList<Row>(data.size() + 8);
+        LocalDate currentDay = null;
         for (NordpoolPrice entry : data) {
-            var currentDay = entry.timeInstant();
-            if (currentDay.atZone(fiZoneID).truncatedTo(ChronoUnit.DAYS).isAfter(currentDayTime.atZone(fiZoneID).truncatedTo(ChronoUnit.DAYS)) || first) {
-                first = false;
-                currentDayTime = currentDay;
-                day = createDayH2();
-                containerList.add(day);
-                list = new UnorderedPriceList();
-                containerList.add(list);
-                daySpan = createDaySpan();
-                daySpan.setText(DateTimeFormatter.ofLocalizedDate(FormatStyle.LONG).withLocale(locale).format(entry.timeInstant().atZone(fiZoneID)));
-            }
             final var localDateTime = entry.timeInstant().atZone(fiZoneID).toLocalDateTime();
-            day.setText(DateTimeFormatter.ofLocalizedDate(FormatStyle.LONG).withLocale(locale).format(localDateTime));
-            final var timeSpan = new Span(DateTimeFormatter.ofPattern("HH:mm").withLocale(locale).format(localDateTime));
+            if (!localDateTime.toLocalDate().equals(currentDay)) {
+                currentDay = localDateTime.toLocalDate();
+                rows.add(new Row(dayFormatter.format(localDateTime), null, null, 0, false));
+            }
             final var vatPrice = entry.price() * getVAT(entry.timeInstant());
+            rows.add(new Row(null, timeFormatter.format(localDateTime), numberFormat.format(vatPrice) + "¢", vatPrice, Objects.equals(localDateTime, nowLocalDateTime)));
+        }
+        return rows;
+    }
 
-            final NumberFormat numberFormat = getNumberFormat(getLocale(), 2);
-            numberFormat.setMinimumFractionDigits(2);
-            final var priceSpan = new Span(numberFormat.format(vatPrice) + "¢");
-
-            final ListItem item = new PriceListItem(timeSpan, priceSpan);
-
-            setPriceTextColor(vatPrice, priceSpan);
-
-            // Add the hover effect only for desktop browsers
-            attachEvent.getUI().getPage().retrieveExtendedClientDetails(details -> {
-                if (!details.isTouchDevice()) {
-                    item.addClassNames(
-                            Transform.Hover.SCALE_102,
-                            Transition.TRANSITION
-                    );
-                    if (vatPrice <= cheapLimit) {
-                        item.addClassNames(Background.Hover.SUCCESS_10, BorderColor.Hover.SUCCESS);
-                    }
-                    if (vatPrice > cheapLimit && vatPrice < expensiveLimit) {
-                        item.addClassNames(Background.Hover.PRIMARY_10, BorderColor.Hover.PRIMARY);
-                    }
-                    if (vatPrice >= expensiveLimit) {
-                        item.addClassNames(Background.Hover.ERROR_10, BorderColor.Hover.ERROR);
-                    }
-                }
-            });
-
-            // Current item
-            if (Objects.equals(localDateTime, nowLocalDateTime)) {
-                final var current = getTranslation("Current");
-                Ping ping = new Ping(current, getPriceBackgroundColor(vatPrice));
-
-                timeSpan.setText(timeSpan.getText() + " ");
-                timeSpan.add(ping);
-                setPriceTextColor(vatPrice, timeSpan);
-
-                item.addClassNames(
-                        getPriceBackgroundColor_10(vatPrice),
-                        getPriceBorderColor(vatPrice),
-                        LumoUtility.FontWeight.BOLD
-                );
+    private String getRowClassNames(Row row) {
+        if (row.day() != null) {
+            return dayClassNames;
+        }
+        final var classNames = new ArrayList<String>();
+        classNames.add(itemClassNames);
+        if (row.isCurrent()) {
+            classNames.add(getPriceBackgroundColor_10(row.vatPrice()));
+            classNames.add(getPriceBorderColor(row.vatPrice()));
+            classNames.add(LumoUtility.FontWeight.BOLD);
+        } else {
+            classNames.add(LumoUtility.BorderColor.CONTRAST_10);
+        }
+        if (isDesktop) {
+            classNames.add(Transform.Hover.SCALE_102);
+            classNames.add(Transition.TRANSITION);
+            if (row.vatPrice() <= cheapLimit) {
+                classNames.add(Background.Hover.SUCCESS_10 + " " + BorderColor.Hover.SUCCESS);
+            } else if (row.vatPrice() < expensiveLimit) {
+                classNames.add(Background.Hover.PRIMARY_10 + " " + BorderColor.Hover.PRIMARY);
             } else {
-                item.addClassNames(LumoUtility.BorderColor.CONTRAST_10);
+                classNames.add(Background.Hover.ERROR_10 + " " + BorderColor.Hover.ERROR);
             }
-            list.add(item);
-
-            // Due to the sticky position of some elements we need to scroll to the position of -2h
-            if (Objects.equals(localDateTime, nowLocalDateTime.minusHours(2))) {
-                currentItem = item;
-            }
-        }
-        add(containerList);
-        if (currentItem != null) {
-            currentItem.scrollIntoView();
         }
-    }
-
-
-    private H2 createDayH2() {
-        final var day = new H2();
-        day.addClassNames(
-                LumoUtility.Background.BASE,
-                LumoUtility.Border.BOTTOM,
-                LumoUtility.BorderColor.CONTRAST_10,
-                LumoUtility.FontSize.XXLARGE,
-                Layout.TOP_0,
-                LumoUtility.Margin.Bottom.NONE,
-                LumoUtility.Margin.Horizontal.AUTO,
-                LumoUtility.Margin.Top.MEDIUM,
-                LumoUtility.MaxWidth.SCREEN_SMALL,
-                LumoUtility.Padding.SMALL,
-                LumoUtility.Position.STICKY,
-                Layout.Z_10
-        );
-        return day;
-    }
-
-    private Span createDaySpan() {
-        final var daySpan = new Span();
-        daySpan.addClassNames(LumoUtility.Display.FLEX, LumoUtility.JustifyContent.CENTER, LumoUtility.Padding.MEDIUM, LumoUtility.Background.BASE);
-        daySpan.addClassNames(LumoUtility.TextColor.SECONDARY, LumoUtility.FontSize.SMALL, LumoUtility.Border.BOTTOM, LumoUtility.BorderColor.CONTRAST_10, "sticky-date");
-        return daySpan;
+        return String.join(" ", classNames);
     }
 
 }
@@ -14,3 +14,24 @@ CREATE TABLE IF NOT EXISTS notification (
  up BOOLEAN,
  extra_msg VARCHAR(255)
 );
+ALTER TABLE notification ADD COLUMN IF NOT EXISTS rule_type VARCHAR(32) NOT NULL DEFAULT 'THRESHOLD';
+ALTER TABLE notification ADD COLUMN IF NOT EXISTS param NUMERIC(10,2);
+ALTER TABLE notification ADD COLUMN IF NOT EXISTS ordinal INTEGER;
+ALTER TABLE notification ADD COLUMN IF NOT EXISTS prewarn INTEGER;
+CREATE INDEX IF NOT EXISTS notification_subscription_idx ON notification (subscription_id);
+CREATE TABLE IF NOT EXISTS notification_outbox (
+ id BIGSERIAL PRIMARY KEY,
+ subscription_id uuid NOT NULL,
+ payload TEXT NOT NULL,
+ hour TIMESTAMPTZ NOT NULL,
+ status VARCHAR(16) NOT NULL DEFAULT 'PENDING',
+ attempts INTEGER NOT NULL DEFAULT 0,
+ last_status INTEGER,
+ next_attempt_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+ expires_at TIMESTAMPTZ NOT NULL,
+ created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+ sent_at TIMESTAMPTZ,
+ UNIQUE (subscription_id, hour)
+);
+CREATE INDEX IF NOT EXISTS notification_outbox_due_idx ON notification_outbox (next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS notification_outbox_hour_idx ON notification_outbox (hour);
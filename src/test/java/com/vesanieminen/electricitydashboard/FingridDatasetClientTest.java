@@ -0,0 +1,36 @@
+package com.vesanieminen.electricitydashboard;
+
+import com.vesanieminen.froniusvisualizer.services.FingridDatasetClient;
+import com.vesanieminen.froniusvisualizer.services.FingridDatasetClient.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FingridDatasetClientTest {
+
+    @Test
+    public void testSplitToChunks() {
+        // The first chunk starts at the start of its month, over the end of the year and a leap February
+        final var chunks = FingridDatasetClient.splitToChunks(Instant.parse("2023-12-15T10:00:00Z"), Instant.parse("2024-03-10T05:00:00Z"));
+        assertEquals(List.of(
+                new Chunk(Instant.parse("2023-12-01T00:00:00Z"), Instant.parse("2024-01-01T00:00:00Z")),
+                new Chunk(Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2024-02-01T00:00:00Z")),
+                new Chunk(Instant.parse("2024-02-01T00:00:00Z"), Instant.parse("2024-03-01T00:00:00Z")),
+                // The last chunk is cut at the end
+                new Chunk(Instant.parse("2024-03-01T00:00:00Z"), Instant.parse("2024-03-10T05:00:00Z"))), chunks);
+    }
+
+    @Test
+    public void testSplitToChunksAtMonthBoundaries() {
+        // An end at the start of a month does not add an empty chunk
+        assertEquals(List.of(new Chunk(Instant.parse("2024-04-01T00:00:00Z"), Instant.parse("2024-05-01T00:00:00Z"))),
+                FingridDatasetClient.splitToChunks(Instant.parse("2024-04-01T00:00:00Z"), Instant.parse("2024-05-01T00:00:00Z")));
+        // A range within a month is a single partial chunk
+        assertEquals(List.of(new Chunk(Instant.parse("2024-04-01T00:00:00Z"), Instant.parse("2024-04-03T00:00:00Z"))),
+                FingridDatasetClient.splitToChunks(Instant.parse("2024-04-02T00:00:00Z"), Instant.parse("2024-04-03T00:00:00Z")));
+    }
+
+}
@@ -4,15 +4,39 @@ import com.vesanieminen.froniusvisualizer.services.FmiService;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
 @Slf4j
 public class FmiServiceTest {
+    // A trimmed response of the observations API, with the 10 minute observations between the full hours
+    private static final String observationsBody = """
+            {"observations": [
+              {"name": "Katinen", "localtz": "Europe/Helsinki", "localtime": "20230317T210000", "t2m": 0.5},
+              {"name": "Katinen", "localtz": "Europe/Helsinki", "localtime": "20230317T211000", "t2m": 0.4},
+              {"name": "Katinen", "localtz": "Europe/Helsinki", "localtime": "20230317T215000", "t2m": 0.1},
+              {"name": "Katinen", "localtz": "Europe/Helsinki", "localtime": "20230317T220000", "t2m": -0.2},
+              {"name": "Katinen", "localtz": "Europe/Helsinki", "localtime": "broken", "t2m": 1.0}
+            ]}
+            """;
+
     @Test
-    public void testFmi() {
-        var observations = FmiService.getObservations().getObservations();
+    public void testParseObservations() {
+        final var observations = FmiService.parseObservations(observationsBody).getObservations();
+        assertEquals(2, observations.length);
+        assertEquals(Instant.parse("2023-03-17T19:00:00Z"), FmiService.parseFmiTimestamp(observations[0].getLocaltime(), observations[0].getLocaltz()));
+        assertEquals(0.5, observations[0].getTemperature(), 1e-6);
+        assertEquals(Instant.parse("2023-03-17T20:00:00Z"), FmiService.parseFmiTimestamp(observations[1].getLocaltime(), observations[1].getLocaltz()));
+        assertEquals(-0.2, observations[1].getTemperature(), 1e-6);
+        assertNull(FmiService.parseObservations("{}"));
+    }
 
-        for (var observation : observations) {
-            System.out.println(observation.getName());
-            System.out.println(FmiService.parseFmiTimestamp(observation.getLocaltime(), observation.getLocaltz()));
-        }
+    @Test
+    public void testParseFmiTimestamp() {
+        assertEquals(Instant.parse("2023-03-17T19:50:00Z"), FmiService.parseFmiTimestamp("20230317T215000", "Europe/Helsinki"));
+        assertEquals(Instant.parse("2023-07-17T18:00:00Z"), FmiService.parseFmiTimestamp("20230717T210000", null));
+        assertNull(FmiService.parseFmiTimestamp("not a timestamp", "Europe/Helsinki"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+package com.vesanieminen.electricitydashboard;
+
+import com.vesanieminen.froniusvisualizer.services.NotificationPlanner;
+import com.vesanieminen.froniusvisualizer.services.PriceContext;
+import com.vesanieminen.froniusvisualizer.services.PriceStore;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.NotificationRuleType;
+import com.vesanieminen.froniusvisualizer.services.model.PriceNotification;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NotificationPlannerTest {
+
+    // In the future so that the timer of the planner does not fire during the test
+    private static final ZonedDateTime start = ZonedDateTime.of(2030, 1, 15, 0, 0, 0, 0, fiZoneID);
+
+    private final UUID subscription = UUID.randomUUID();
+    private final UUID otherSubscription = UUID.randomUUID();
+    private final Map<Instant, Map<UUID, NotificationPlanner.Planned>> handed = new LinkedHashMap<>();
+
+    private static PriceContext context() {
+        final var values = new double[24];
+        Arrays.fill(values, 10);
+        values[5] = -1;
+        return PriceContext.create(new PriceStore.Prices(1, start.toInstant().toEpochMilli(), values.length, Map.of(BiddingZone.FI, values),
+                Map.of(BiddingZone.FI, values)), start.toInstant());
+    }
+
+    private static PriceNotification rule(UUID subscriptionId, NotificationRuleType type, String extraMsg) {
+        final var rule = new PriceNotification();
+        rule.setVersion(1);
+        rule.setSubscriptionId(subscriptionId);
+        rule.setEnabled(true);
+        rule.setRuleType(type);
+        rule.setExtraMsg(extraMsg);
+        return rule;
+    }
+
+    private NotificationPlanner plan(List<PriceNotification> rules, Map<UUID, Integer> versions, BiConsumer<Instant, Map<UUID, NotificationPlanner.Planned>> sink) {
+        final var planner = new NotificationPlanner(() -> rules, subscriptionId -> List.of(), ruleIds -> versions, sink);
+        planner.plan(context(), start.toInstant());
+        return planner;
+    }
+
+    @Test
+    public void testMerging() {
+        final var negative = rule(subscription, NotificationRuleType.NEGATIVE_PRICE, "Charge the car");
+        final var belowAverage = rule(subscription, NotificationRuleType.BELOW_DAY_AVERAGE, "");
+        final var changed = rule(otherSubscription, NotificationRuleType.NEGATIVE_PRICE, "");
+        final var warning = rule(otherSubscription, NotificationRuleType.NEGATIVE_PRICE, "");
+        warning.setPrewarn(30);
+        final var versions = Map.of(negative.getId(), 1, belowAverage.getId(), 1, changed.getId(), 2, warning.getId(), 1);
+        final var planner = plan(List.of(negative, belowAverage, changed, warning), versions, handed::put);
+        assertEquals(4, planner.size());
+
+        planner.fireDue(start.plusHours(4).toInstant());
+        assertTrue(handed.isEmpty());
+
+        planner.fireDue(start.plusHours(5).toInstant());
+        assertEquals(0, planner.size());
+        final var warningTime = start.plusHours(4).plusMinutes(30).toInstant();
+        final var firingTime = start.plusHours(5).toInstant();
+        assertEquals(List.of(warningTime, firingTime), new ArrayList<>(handed.keySet()));
+
+        final var warned = handed.get(warningTime).get(otherSubscription);
+        assertEquals("Negative price! (in 30 min)", warned.title());
+        assertTrue(warned.text().startsWith("Price from 05:00 "));
+
+        // The rule with a newer version is dropped and the two rules of the subscription are one message
+        assertEquals(Set.of(subscription), handed.get(firingTime).keySet());
+        final var merged = handed.get(firingTime).get(subscription);
+        final var context = context();
+        final var negativeText = context.getFirings(negative).get(0).text();
+        final var belowAverageText = context.getFirings(belowAverage).get(0).text();
+        // The notifications of the same time come out of the queue in any order
+        assertTrue(merged.text().equals(negativeText + " " + belowAverageText) || merged.text().equals(belowAverageText + " " + negativeText));
+        assertEquals("Charge the car", merged.extraMsg());
+        planner.shutdown();
+    }
+
+    @Test
+    public void testFailedHandOverIsKept() {
+        final var negative = rule(subscription, NotificationRuleType.NEGATIVE_PRICE, "");
+        final var failures = new AtomicInteger(1);
+        final var planner = plan(List.of(negative), Map.of(negative.getId(), 1), (time, due) -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("The outbox is not available");
+            }
+            handed.put(time, due);
+        });
+
+        planner.fireDue(start.plusHours(5).toInstant());
+        assertTrue(handed.isEmpty());
+        assertEquals(1, planner.size());
+
+        planner.fireDue(start.plusHours(5).toInstant());
+        assertEquals(Set.of(start.plusHours(5).toInstant()), handed.keySet());
+        assertEquals(0, planner.size());
+        planner.shutdown();
+    }
+
+}
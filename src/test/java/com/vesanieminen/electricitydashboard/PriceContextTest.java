@@ -0,0 +1,152 @@
+package com.vesanieminen.electricitydashboard;
+
+import com.vesanieminen.froniusvisualizer.services.PriceContext;
+import com.vesanieminen.froniusvisualizer.services.PriceStore;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.NotificationRuleType;
+import com.vesanieminen.froniusvisualizer.services.model.PriceNotification;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriceContextTest {
+
+    private static final long hourMillis = 3_600_000L;
+
+    private static PriceStore.Prices prices(ZonedDateTime start, double[] values) {
+        return new PriceStore.Prices(1, start.toInstant().toEpochMilli(), values.length, Map.of(BiddingZone.FI, values), Map.of(BiddingZone.FI, values));
+    }
+
+    /**
+     * @return hourly prices of the given days that are 10 c/kWh plus the hour of the day
+     */
+    private static double[] hourlyValues(ZonedDateTime start, int days) {
+        final var length = (int) ((start.plusDays(days).toInstant().toEpochMilli() - start.toInstant().toEpochMilli()) / hourMillis);
+        final var values = new double[length];
+        for (int i = 0; i < length; ++i) {
+            values[i] = 10 + time(start, i).getHour();
+        }
+        return values;
+    }
+
+    private static ZonedDateTime time(ZonedDateTime start, int index) {
+        return Instant.ofEpochMilli(start.toInstant().toEpochMilli() + index * hourMillis).atZone(fiZoneID);
+    }
+
+    private static PriceNotification rule(NotificationRuleType type, Double param) {
+        final var rule = new PriceNotification();
+        rule.setRuleType(type);
+        rule.setParam(param);
+        return rule;
+    }
+
+    private static List<Instant> times(List<PriceContext.Firing> firings) {
+        return firings.stream().map(PriceContext.Firing::time).toList();
+    }
+
+    @Test
+    public void testCheapestHoursOnShortDay() {
+        // 2024-03-31 has 23 hours in Finland, 03:00 is skipped
+        final var start = ZonedDateTime.of(2024, 3, 30, 0, 0, 0, 0, fiZoneID);
+        final var values = hourlyValues(start, 3);
+        assertEquals(24 + 23 + 24, values.length);
+        for (int i = 0; i < values.length; ++i) {
+            final var time = time(start, i);
+            if (time.getDayOfMonth() == 31 && (time.getHour() == 4 || time.getHour() == 5)) {
+                values[i] = time.getHour() - 3;
+            }
+        }
+        final var context = PriceContext.create(prices(start, values), start.toInstant());
+
+        final var firings = context.getFirings(rule(NotificationRuleType.CHEAPEST_HOURS, 2.0));
+        assertEquals(List.of(start.toInstant(), ZonedDateTime.of(2024, 3, 31, 4, 0, 0, 0, fiZoneID).toInstant(),
+                ZonedDateTime.of(2024, 4, 1, 0, 0, 0, 0, fiZoneID).toInstant()), times(firings));
+        assertTrue(firings.get(0).text().endsWith("Until 02:00."));
+        assertTrue(firings.get(1).text().endsWith("Until 06:00."));
+
+        // The default is the 3 cheapest hours, which is 00:00 of the short day as well
+        assertEquals(List.of(start.toInstant(), ZonedDateTime.of(2024, 3, 31, 0, 0, 0, 0, fiZoneID).toInstant(),
+                ZonedDateTime.of(2024, 3, 31, 4, 0, 0, 0, fiZoneID).toInstant(), ZonedDateTime.of(2024, 4, 1, 0, 0, 0, 0, fiZoneID).toInstant()),
+                times(context.getFirings(rule(NotificationRuleType.CHEAPEST_HOURS, null))));
+    }
+
+    @Test
+    public void testRunsOnLongDay() {
+        // 2024-10-27 has 25 hours in Finland, 03:00 is repeated
+        final var start = ZonedDateTime.of(2024, 10, 26, 0, 0, 0, 0, fiZoneID);
+        final var values = new double[24 + 25 + 24];
+        Arrays.fill(values, 10);
+        var repeated = 0;
+        for (int i = 0; i < values.length; ++i) {
+            final var time = time(start, i);
+            if (time.getDayOfMonth() == 27 && time.getHour() == 3) {
+                values[i] = 5;
+                ++repeated;
+            }
+        }
+        assertEquals(2, repeated);
+        final var context = PriceContext.create(prices(start, values), start.toInstant());
+        // The first 03:00 is in summer time
+        final var firstThree = ZonedDateTime.of(2024, 10, 27, 3, 0, 0, 0, fiZoneID).toInstant();
+
+        // Both 03:00 hours are one run that ends at 04:00
+        final var belowAverage = context.getFirings(rule(NotificationRuleType.BELOW_DAY_AVERAGE, null));
+        assertEquals(List.of(firstThree), times(belowAverage));
+        assertTrue(belowAverage.get(0).text().endsWith("Until 04:00."));
+        final var cheapest = context.getFirings(rule(NotificationRuleType.CHEAPEST_HOURS, 2.0));
+        assertEquals(firstThree, cheapest.get(1).time());
+        assertTrue(cheapest.get(1).text().endsWith("Until 04:00."));
+    }
+
+    @Test
+    public void testGaps() {
+        final var start = ZonedDateTime.of(2024, 1, 15, 0, 0, 0, 0, fiZoneID);
+        final var values = new double[24];
+        Arrays.fill(values, 10);
+        values[5] = -1;
+        values[6] = Double.NaN;
+        values[7] = -1;
+        values[10] = 5;
+        values[11] = Double.NaN;
+        values[12] = 15;
+        values[14] = 5;
+        values[15] = 15;
+        final var prices = prices(start, values);
+        final var context = PriceContext.create(prices, start.toInstant());
+
+        // A missing hour ends a run
+        assertEquals(List.of(start.plusHours(5).toInstant(), start.plusHours(7).toInstant()), times(context.getFirings(rule(NotificationRuleType.NEGATIVE_PRICE, null))));
+        // and is not a crossing
+        final var threshold = rule(NotificationRuleType.THRESHOLD, null);
+        threshold.setPrice(12);
+        threshold.setUp(true);
+        assertEquals(List.of(start.plusHours(15).toInstant()), times(context.getFirings(threshold)));
+
+        // The firings before the start of the context are left out
+        assertEquals(List.of(start.plusHours(7).toInstant()),
+                times(PriceContext.create(prices, start.plusHours(6).toInstant()).getFirings(rule(NotificationRuleType.NEGATIVE_PRICE, null))));
+    }
+
+    @Test
+    public void testSpikeParameter() {
+        final var start = ZonedDateTime.of(2024, 2, 1, 0, 0, 0, 0, fiZoneID);
+        final var values = new double[48];
+        Arrays.fill(values, 10);
+        values[20] = 25;
+        final var context = PriceContext.create(prices(start, values), start.toInstant());
+
+        // The month's average is 10.3 c/kWh
+        assertEquals(List.of(start.plusHours(20).toInstant()), times(context.getFirings(rule(NotificationRuleType.SPIKE, null))));
+        assertEquals(List.of(start.plusHours(20).toInstant()), times(context.getFirings(rule(NotificationRuleType.SPIKE, 2.4))));
+        assertEquals(List.of(), context.getFirings(rule(NotificationRuleType.SPIKE, 2.5)));
+    }
+
+}
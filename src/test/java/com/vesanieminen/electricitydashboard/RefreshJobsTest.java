@@ -0,0 +1,97 @@
+package com.vesanieminen.electricitydashboard;
+
+import com.vesanieminen.froniusvisualizer.services.RefreshJobs;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RefreshJobsTest {
+
+    private final List<String> ran = new ArrayList<>();
+    private final List<Runnable> executed = new ArrayList<>();
+
+    private RefreshJobs.Job job(String name, boolean success, String... after) {
+        return new RefreshJobs.Job(name, () -> {
+            ran.add(name);
+            return success;
+        }, List.of(after), null, false);
+    }
+
+    private RefreshJobs.JobStatus status(RefreshJobs jobs, String name) {
+        return jobs.getStatus(ZonedDateTime.now(fiZoneID)).stream().filter(item -> item.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    public void testDependencyOrder() {
+        final var jobs = new RefreshJobs(List.of(job("d", true, "a", "c"), job("c", true, "b"), job("b", true, "a"), job("a", true), job("e", true)), executed::add);
+        assertEquals(List.of("a", "b", "c", "d"), jobs.downstream("a"));
+        jobs.runChain("a", "test");
+        assertEquals(List.of("a", "b", "c", "d"), ran);
+        ran.clear();
+        jobs.runChain("c", "test");
+        assertEquals(List.of("c", "d"), ran);
+    }
+
+    @Test
+    public void testInvalidGraphs() {
+        assertThrows(IllegalStateException.class, () -> new RefreshJobs(List.of(job("a", true, "b"), job("b", true, "a")), executed::add));
+        assertThrows(IllegalStateException.class, () -> new RefreshJobs(List.of(job("a", true, "missing")), executed::add));
+        assertThrows(IllegalStateException.class, () -> new RefreshJobs(List.of(job("a", true), job("a", true)), executed::add));
+    }
+
+    @Test
+    public void testFailureSkipsDownstream() {
+        final var jobs = new RefreshJobs(List.of(job("a", false), job("b", true, "a"), job("c", true, "b"), job("d", true)), executed::add);
+        jobs.runChain("a", "test");
+        assertEquals(List.of("a"), ran);
+        final var failed = status(jobs, "a");
+        assertEquals(1, failed.runs());
+        assertEquals(1, failed.failures());
+        assertTrue(failed.isFailing());
+        assertNull(failed.lastSuccess());
+        assertEquals(0, status(jobs, "b").runs());
+        assertEquals(0, status(jobs, "c").runs());
+    }
+
+    @Test
+    public void testBusyRunIsRunAgain() {
+        final var holder = new AtomicReference<RefreshJobs>();
+        final var calls = new AtomicInteger();
+        final var busy = new RefreshJobs.Job("a", () -> {
+            // The first run is triggered again while it is running
+            if (calls.incrementAndGet() == 1) {
+                holder.get().runChain("a", "test");
+                holder.get().runChain("a", "test");
+            }
+            return true;
+        }, List.of(), null, false);
+        final var jobs = new RefreshJobs(List.of(busy, job("b", true, "a")), executed::add);
+        holder.set(jobs);
+        jobs.runChain("a", "test");
+        assertEquals(1, calls.get());
+        assertEquals(List.of("b"), ran);
+        assertEquals(2, status(jobs, "a").skipped());
+        // The two busy runs are merged into one run of the job and the jobs after it
+        assertEquals(1, executed.size());
+        executed.remove(0).run();
+        assertEquals(2, calls.get());
+        assertEquals(List.of("b", "b"), ran);
+        assertTrue(executed.isEmpty());
+        final var done = status(jobs, "a");
+        assertEquals(2, done.runs());
+        assertEquals(0, done.failures());
+        assertNotNull(done.lastSuccess());
+    }
+
+}
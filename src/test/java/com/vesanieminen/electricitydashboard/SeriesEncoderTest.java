@@ -0,0 +1,150 @@
+package com.vesanieminen.electricitydashboard;
+
+import com.vesanieminen.froniusvisualizer.services.PricePayloadService;
+import com.vesanieminen.froniusvisualizer.services.PriceStore;
+import com.vesanieminen.froniusvisualizer.services.SeriesEncoder;
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.services.model.TimeSeries;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+public class SeriesEncoderTest {
+
+    private static final long hour = Duration.ofHours(1).toMillis();
+
+    @Test
+    public void testColumnarInt16() {
+        final var start = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+        // The third hour is missing
+        final var series = new TimeSeries(new long[]{start, start + hour, start + 3 * hour}, new double[]{1.5, -2.25, 10.01});
+        final var buffer = ByteBuffer.wrap(SeriesEncoder.toColumnar(series, hour, 100));
+        buffer.position(4);
+        assertEquals(0, buffer.get());
+        assertEquals(start, buffer.getLong());
+        assertEquals(hour, buffer.getInt());
+        assertEquals(4, buffer.getInt());
+        assertEquals(100f, buffer.getFloat());
+        assertEquals(150, buffer.getShort());
+        assertEquals(-225, buffer.getShort());
+        assertEquals(Short.MIN_VALUE, buffer.getShort());
+        assertEquals(1001, buffer.getShort());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testColumnarFloatWithOffsets() {
+        final var start = Instant.parse("2024-03-30T23:00:00Z").toEpochMilli();
+        // Daily values over the DST change are 23 hours apart
+        final var series = new TimeSeries(new long[]{start, start + 23 * hour}, new double[]{500, 1000});
+        final var buffer = ByteBuffer.wrap(SeriesEncoder.toColumnar(series, Duration.ofDays(1).toMillis(), 100));
+        buffer.position(4);
+        assertEquals(3, buffer.get());
+        assertEquals(start, buffer.getLong());
+        assertEquals(0, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+        assertEquals(1f, buffer.getFloat());
+        assertEquals(0, buffer.getInt());
+        assertEquals(23 * 3600, buffer.getInt());
+        assertEquals(500f, buffer.getFloat());
+        assertEquals(1000f, buffer.getFloat());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testColumnarDailyPrices() {
+        final var firstDay = ZonedDateTime.of(2024, 3, 25, 0, 0, 0, 0, BiddingZone.FI.zoneId);
+        final var start = firstDay.toInstant().toEpochMilli();
+        // 10 days of hourly prices, the 31st of March is 23 hours long
+        final var hours = 10 * 24 - 1;
+        final var column = new double[hours];
+        for (int i = 0; i < hours; ++i) {
+            column[i] = Instant.ofEpochMilli(start + i * hour).atZone(BiddingZone.FI.zoneId).getDayOfMonth();
+        }
+        final var prices = new PriceStore.Prices(1, start, hours, Map.of(BiddingZone.FI, column), Map.of(BiddingZone.FI, column));
+
+        // Before the DST change the days are evenly spaced and sent with a day step
+        final var beforeChange = prices.dailyAverages(BiddingZone.FI, firstDay.toInstant(), firstDay.plusDays(5).toInstant(), false);
+        var buffer = ByteBuffer.wrap(SeriesEncoder.toColumnar(beforeChange, PricePayloadService.Resolution.DAY.stepMillis, 100));
+        buffer.position(4);
+        assertEquals(0, buffer.get());
+        assertEquals(start, buffer.getLong());
+        assertEquals(Duration.ofDays(1).toMillis(), buffer.getInt());
+        assertEquals(5, buffer.getInt());
+        assertEquals(100f, buffer.getFloat());
+        for (int day = 25; day < 30; ++day) {
+            assertEquals(day * 100, buffer.getShort());
+        }
+        assertEquals(0, buffer.remaining());
+
+        // Over the DST change the days have explicit offsets, one value per day either way
+        final var overChange = prices.dailyAverages(BiddingZone.FI, firstDay.toInstant(), firstDay.plusDays(10).toInstant(), false);
+        buffer = ByteBuffer.wrap(SeriesEncoder.toColumnar(overChange, PricePayloadService.Resolution.DAY.stepMillis, 100));
+        buffer.position(4);
+        assertEquals(2, buffer.get());
+        assertEquals(start, buffer.getLong());
+        assertEquals(0, buffer.getInt());
+        assertEquals(10, buffer.getInt());
+        assertEquals(100f, buffer.getFloat());
+        for (int day = 0; day < 10; ++day) {
+            assertEquals(firstDay.plusDays(day).toInstant().toEpochMilli() - start, buffer.getInt() * 1000L);
+        }
+        for (int day = 0; day < 10; ++day) {
+            assertEquals(firstDay.plusDays(day).getDayOfMonth() * 100, buffer.getShort());
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    /**
+     * Compares the payload sizes and the serialization times of two years of hourly prices.
+     */
+    @Test
+    public void benchmarkFormats() {
+        final var random = new Random(1);
+        final var size = 2 * 365 * 24;
+        final var times = new long[size];
+        final var values = new double[size];
+        final var start = Instant.parse("2022-01-01T00:00:00Z").toEpochMilli();
+        for (int i = 0; i < size; ++i) {
+            times[i] = start + i * hour;
+            values[i] = Math.round(random.nextGaussian(10, 8) * 1000) / 1000.0;
+        }
+        final var series = new TimeSeries(times, values);
+
+        final var json = benchmark("JSON", () -> SeriesEncoder.toJson(series, "prices", "price", "zone", "FI", "unit", "c/kWh"));
+        final var csv = benchmark("CSV", () -> SeriesEncoder.toCsv(series, "price"));
+        final var columnar = benchmark("Columnar", () -> SeriesEncoder.toColumnar(series, hour, 100));
+
+        assertTrue(columnar.length * 10 < json.length);
+        assertTrue(csv.length < json.length);
+    }
+
+    private static byte[] benchmark(String name, Supplier<byte[]> encoder) {
+        // Warm up
+        for (int i = 0; i < 20; ++i) {
+            encoder.get();
+        }
+        final var rounds = 50;
+        byte[] body = null;
+        final var startNanos = System.nanoTime();
+        for (int i = 0; i < rounds; ++i) {
+            body = encoder.get();
+        }
+        final var micros = (System.nanoTime() - startNanos) / rounds / 1000;
+        final var gzipSize = SeriesEncoder.Payload.of(body, "", true).gzipBody().length;
+        log.info("{}: {} bytes, {} bytes gzipped, {} µs per serialization", name, body.length, gzipSize, micros);
+        return body;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.vesanieminen.electricitydashboard;
+
+import com.vesanieminen.froniusvisualizer.services.model.BiddingZone;
+import com.vesanieminen.froniusvisualizer.util.VatSchedule;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static com.vesanieminen.froniusvisualizer.util.Utils.fiZoneID;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VatScheduleTest {
+
+    private static final long hourMillis = 3_600_000L;
+
+    @Test
+    public void testFinnishRates() {
+        final var schedule = VatSchedule.fi();
+        assertEquals(1.24, schedule.getMultiplier(ZonedDateTime.of(2022, 11, 30, 23, 0, 0, 0, fiZoneID).toInstant()));
+        assertEquals(1.10, schedule.getMultiplier(ZonedDateTime.of(2022, 12, 1, 0, 0, 0, 0, fiZoneID).toInstant()));
+        assertEquals(1.10, schedule.getMultiplier(ZonedDateTime.of(2023, 4, 30, 23, 0, 0, 0, fiZoneID).toInstant()));
+        assertEquals(1.24, schedule.getMultiplier(ZonedDateTime.of(2023, 5, 1, 0, 0, 0, 0, fiZoneID).toInstant()));
+        assertEquals(1.24, schedule.getMultiplier(ZonedDateTime.of(2024, 8, 31, 23, 0, 0, 0, fiZoneID).toInstant()));
+        assertEquals(1.255, schedule.getMultiplier(ZonedDateTime.of(2024, 9, 1, 0, 0, 0, 0, fiZoneID).toInstant()));
+        // Before the first rate
+        assertEquals(1.24, schedule.getMultiplier(ZonedDateTime.of(2010, 1, 1, 0, 0, 0, 0, fiZoneID).toInstant()));
+    }
+
+    @Test
+    public void testZoneRates() {
+        final var estonia = BiddingZone.EE.zoneId;
+        assertEquals(1.20, BiddingZone.EE.getVat(ZonedDateTime.of(2023, 12, 31, 23, 0, 0, 0, estonia).toInstant()));
+        assertEquals(1.22, BiddingZone.EE.getVat(ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, estonia).toInstant()));
+        assertEquals(1.22, BiddingZone.EE.getVat(ZonedDateTime.of(2025, 6, 30, 23, 0, 0, 0, estonia).toInstant()));
+        assertEquals(1.24, BiddingZone.EE.getVat(ZonedDateTime.of(2025, 7, 1, 0, 0, 0, 0, estonia).toInstant()));
+        assertEquals(1.0, BiddingZone.NO4.getVat(ZonedDateTime.of(2025, 7, 1, 0, 0, 0, 0, BiddingZone.NO4.zoneId).toInstant()));
+        assertEquals(1.25, BiddingZone.NO3.getVat(ZonedDateTime.of(2025, 7, 1, 0, 0, 0, 0, BiddingZone.NO3.zoneId).toInstant()));
+    }
+
+    @Test
+    public void testApplyMatchesSingleLookups() {
+        final var schedule = VatSchedule.parse(List.of("# comment", "2024-01-01;1.5", "2024-01-02;2"), fiZoneID);
+        final var start = ZonedDateTime.of(2023, 12, 31, 20, 0, 0, 0, fiZoneID).toInstant().toEpochMilli();
+        final var values = new double[40];
+        final var times = new long[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = i;
+            times[i] = start + i * hourMillis;
+        }
+        values[5] = Double.NaN;
+        final var expected = new double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            expected[i] = values[i] * schedule.getMultiplier(times[i]);
+        }
+        assertArrayEquals(expected, schedule.apply(start, hourMillis, values));
+        assertArrayEquals(expected, schedule.apply(times, values));
+        assertTrue(Double.isNaN(schedule.apply(start, hourMillis, values)[5]));
+    }
+
+}